@@ -6,7 +6,7 @@ import java.util.*;
 public class DynamicProgramming {
     
     private int width, height;
-    private Map<String, Integer> memo; // Memoization table
+    private Map<Long, Integer> memo; // Memoization table keyed by Zobrist hash
     private DPMetrics metrics;
     
     public DynamicProgramming(int width, int height) {
@@ -17,11 +17,15 @@ public class DynamicProgramming {
     }
     
     public int findMinimumMoves(TType[][] current, TType[][] solution) {
+        return findMinimumMoves(current, solution, Zobrist.of(current), countDifferences(current, solution));
+    }
+    
+    // stateKey is the Zobrist hash of current and differences its mismatch count
+    // against solution; both are updated in O(1) per move by the caller
+    private int findMinimumMoves(TType[][] current, TType[][] solution, long stateKey, int differences) {
         long startTime = System.nanoTime();
         metrics.reset();
         
-        String stateKey = encodeState(current);
-        
         // Check if already computed
         if (memo.containsKey(stateKey)) {
             metrics.cacheHits++;
@@ -29,14 +33,11 @@ public class DynamicProgramming {
         }
         
         // Base case: puzzle solved
-        if (isSolved(current, solution)) {
+        if (differences == 0) {
             metrics.statesExplored++;
             return 0;
         }
         
-        // Count differences
-        int differences = countDifferences(current, solution);
-        
         // Pruning: if too many differences, use heuristic
         if (differences > 20) {
             metrics.cacheMisses++;
@@ -54,9 +55,11 @@ public class DynamicProgramming {
                     // Make move
                     TType[][] nextState = copyBoard(current);
                     nextState[y][x] = solution[y][x];
+                    long nextKey = stateKey ^ Zobrist.cell(y * width + x, current[y][x])
+                                            ^ Zobrist.cell(y * width + x, solution[y][x]);
                     
-                    // Recursive call with memoization
-                    int movesFromHere = 1 + findMinimumMoves(nextState, solution);
+                    // Recursive call with memoization (the move fixes exactly one difference)
+                    int movesFromHere = 1 + findMinimumMoves(nextState, solution, nextKey, differences - 1);
                     minMoves = Math.min(minMoves, movesFromHere);
                 }
             }
@@ -75,8 +78,10 @@ public class DynamicProgramming {
     public List<int[]> findOptimalSequence(TType[][] current, TType[][] solution) {
         List<int[]> sequence = new ArrayList<>();
         TType[][] state = copyBoard(current);
+        long stateKey = Zobrist.of(state);
+        int differences = countDifferences(state, solution);
         
-        while (!isSolved(state, solution)) {
+        while (differences > 0) {
             int bestX = -1, bestY = -1;
             int bestValue = Integer.MAX_VALUE;
             
@@ -86,8 +91,10 @@ public class DynamicProgramming {
                     if (state[y][x] != solution[y][x]) {
                         TType[][] nextState = copyBoard(state);
                         nextState[y][x] = solution[y][x];
+                        long nextKey = stateKey ^ Zobrist.cell(y * width + x, state[y][x])
+                                                ^ Zobrist.cell(y * width + x, solution[y][x]);
                         
-                        int value = findMinimumMoves(nextState, solution);
+                        int value = findMinimumMoves(nextState, solution, nextKey, differences - 1);
                         
                         if (value < bestValue) {
                             bestValue = value;
@@ -101,7 +108,10 @@ public class DynamicProgramming {
             if (bestX == -1) break;
             
             // Make best move
+            stateKey ^= Zobrist.cell(bestY * width + bestX, state[bestY][bestX])
+                      ^ Zobrist.cell(bestY * width + bestX, solution[bestY][bestX]);
             state[bestY][bestX] = solution[bestY][bestX];
+            differences--;
             sequence.add(new int[]{bestX, bestY});
         }
         
@@ -173,42 +183,11 @@ public class DynamicProgramming {
     }
     
     public int calculateEditDistance(TType[][] current, TType[][] solution) {
-        int differences = 0;
-        
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                if (current[y][x] != solution[y][x]) {
-                    differences++;
-                }
-            }
-        }
-        
-        return differences; // For this game, edit distance = simple difference count
+        return countDifferences(current, solution); // For this game, edit distance = simple difference count
     }
     
     // Helper methods
     
-    private String encodeState(TType[][] board) {
-        StringBuilder sb = new StringBuilder();
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                sb.append(board[y][x].ordinal()).append(',');
-            }
-        }
-        return sb.toString();
-    }
-    
-    private boolean isSolved(TType[][] current, TType[][] solution) {
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                if (current[y][x] != solution[y][x]) {
-                    return false;
-                }
-            }
-        }
-        return true;
-    }
-    
     private int countDifferences(TType[][] current, TType[][] solution) {
         int count = 0;
         for (int y = 0; y < height; y++) {
@@ -0,0 +1,35 @@
+package Tracks;
+
+/**
+ * 64-bit Zobrist keys for board states: the XOR of one key per
+ * (cell, TType) pair, so a single-cell change is an O(1) XOR update.
+ * Keys come from the SplitMix64 finaliser, so no tables are needed.
+ */
+public final class Zobrist {
+
+    private static final long CELL_SEED = 0x9E3779B97F4A7C15L;
+
+    private Zobrist() {}
+
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /** Key of cell i holding piece t (EMPTY hashes to 0). */
+    public static long cell(int i, TType t) {
+        int ord = t.ordinal();
+        return ord == 0 ? 0L : mix(CELL_SEED + ((long) i << 3 | ord));
+    }
+
+    /** Full hash of a board. O(cells); incremental updates use cell(). */
+    public static long of(TType[][] board) {
+        long h = 0;
+        int w = board.length == 0 ? 0 : board[0].length;
+        for (int y = 0; y < board.length; y++)
+            for (int x = 0; x < w; x++)
+                h ^= cell(y * w + x, board[y][x]);
+        return h;
+    }
+}
@@ -61,7 +61,7 @@ public class AnalysisPanel extends JPanel {
         final long         totalTimeNs;
         final long         spaceUsed;
         final boolean      solved;
-        final List<long[]> stepLog;   // each entry: [timeNs, ops, space]
+        final List<long[]> stepLog;   // each entry: [timeNs, ops, space, moveNo]
 
         AlgoRun(String algoName, int moves, long wallMs, long totalOps,
                 long totalTimeNs, long spaceUsed, boolean solved,
@@ -620,7 +620,7 @@ public class AnalysisPanel extends JPanel {
         Object[][] data = new Object[show][4];
         for (int i = 0; i < show; i++) {
             long[] s   = log.get(log.size() - show + i);
-            data[i][0] = "#" + (log.size() - show + i + 1);
+            data[i][0] = "#" + (s.length > 3 ? s[3] : log.size() - show + i + 1);
             data[i][1] = String.format("%.3f", s[0] / 1_000_000.0);
             data[i][2] = s[1];
             data[i][3] = s[2];
@@ -3,7 +3,6 @@ package Tracks;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
-import java.util.List;
  
 /**
  * BoardPanel — renders the game board and handles user input.
@@ -19,6 +18,24 @@ public class BoardPanel extends JPanel {
     private int margin   = 40;    // Margin around board
     private int cellSize = 50;   // Size of each cell
     public  boolean highlightPath = false;
+
+    /** Smallest cell size in pixels; large boards scroll instead of shrinking further */
+    static final int MIN_CELL = 16;
+
+    private static final Color CELL_BG   = new Color(245, 245, 245);
+    private static final Color CLUE_BG   = new Color(220, 255, 220);
+    private static final Color HIGHLIGHT = new Color(255, 200, 0, 140);
+    private static final Color OVER_BG   = new Color(255, 0, 0, 40);
+    private static final Color CLUE_OVER = new Color(200, 0, 0);
+    private static final Color CLUE_MET  = new Color(0, 140, 0);
+    private static final Color LOOP_BG   = new Color(255, 120, 0, 90);
+    private static final Color BAD_END   = new Color(220, 0, 0);
+
+    // Range of cells intersecting the clip, set at the start of each paint
+    private int cx0, cy0, cx1, cy1;
+
+    // State being painted: one immutable view per paint (see Game.view), never the live board
+    private BoardView v;
  
     /** Listener for move events */
     public interface MoveListener { void onMove(int x, int y); }
@@ -50,7 +67,7 @@ public class BoardPanel extends JPanel {
     /** Calculates cell size based on board dimensions. */
     private void computeSize() {
         if (g == null) return;
-        int cs = Math.min(50, Math.max(24, 600 / Math.max(g.w, g.h)));
+        int cs = Math.min(50, Math.max(MIN_CELL, 600 / Math.max(g.w, g.h)));
         cellSize = cs;
         margin   = 40;
         setPreferredSize(new Dimension(margin * 2 + g.w * cellSize,
@@ -71,11 +88,10 @@ public class BoardPanel extends JPanel {
         }
         // Right click: remove piece (if not a clue)
         else if (SwingUtilities.isRightMouseButton(e)) {
-            if (g.board[y][x].clue) return;
-            g.hist.push(new Move(x, y, g.board[y][x].t, false));
-            g.board[y][x].t = TType.EMPTY;
+            int i = g.idx(x, y);
+            if (g.isClue(i)) return;
+            g.playMove(x, y, TType.EMPTY);
             highlightPath = false;
-            g.rebuildGraph();
             repaint();
         }
     }
@@ -91,23 +107,35 @@ public class BoardPanel extends JPanel {
         startX = (getWidth()  - boardW) / 2;
         startY = (getHeight() - boardH) / 2;
  
+        // Only cells inside the clip are painted, so cost follows the viewport, not the board
+        Rectangle clip = gg.getClipBounds();
+        if (clip == null) clip = new Rectangle(0, 0, getWidth(), getHeight());
+        cx0 = Math.max(0, (clip.x - startX) / cellSize);
+        cy0 = Math.max(0, (clip.y - startY) / cellSize);
+        cx1 = Math.min(g.w - 1, (clip.x + clip.width  - startX) / cellSize);
+        cy1 = Math.min(g.h - 1, (clip.y + clip.height - startY) / cellSize);
+
+        v = g.view();
         Graphics2D g2 = (Graphics2D) gg;
         g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        g2.setStroke(new BasicStroke(3));
+        g2.setStroke(new BasicStroke(cellSize >= 24 ? 3 : 2));
  
         drawGrid(g2);
+        drawViolations(g2);
+        drawLoops(g2);
         drawPieces(g2);
+        drawBadEnds(g2);
         drawHighlightPath(g2);
         drawClues(g2);
     }
  
     /** Draws the grid background. */
     private void drawGrid(Graphics2D g2) {
-        for (int y = 0; y < g.h; y++) {
-            for (int x = 0; x < g.w; x++) {
+        for (int y = cy0; y <= cy1; y++) {
+            for (int x = cx0; x <= cx1; x++) {
                 int sx = startX + x * cellSize;
                 int sy = startY + y * cellSize;
-                g2.setColor(new Color(245, 245, 245));
+                g2.setColor(CELL_BG);
                 g2.fillRect(sx, sy, cellSize, cellSize);
                 g2.setColor(Color.DARK_GRAY);
                 g2.drawRect(sx, sy, cellSize, cellSize);
@@ -115,17 +143,66 @@ public class BoardPanel extends JPanel {
         }
     }
  
+    /** Tints rows and columns holding more pieces than their clue (from the view, no scan). */
+    private void drawViolations(Graphics2D g2) {
+        if (v.overLines.length == 0) return;
+        g2.setColor(OVER_BG);
+        for (int line : v.overLines) {
+            if (line < g.h) {
+                if (line < cy0 || line > cy1) continue;
+                g2.fillRect(startX + cx0 * cellSize, startY + line * cellSize, (cx1 - cx0 + 1) * cellSize, cellSize);
+            } else {
+                int x = line - g.h;
+                if (x < cx0 || x > cx1) continue;
+                g2.fillRect(startX + x * cellSize, startY + cy0 * cellSize, cellSize, (cy1 - cy0 + 1) * cellSize);
+            }
+        }
+    }
+ 
+    /** Tints cells on closed loops (the view lists them, so no scan). */
+    private void drawLoops(Graphics2D g2) {
+        if (v.loopCells.length == 0) return;
+        g2.setColor(LOOP_BG);
+        for (int i : v.loopCells) {
+            int x = g.xOf(i), y = g.yOf(i);
+            if (x < cx0 || x > cx1 || y < cy0 || y > cy1) continue;
+            g2.fillRect(startX + x * cellSize + 1, startY + y * cellSize + 1, cellSize - 1, cellSize - 1);
+        }
+    }
+
+    /** Marks dangling ends and stray exits of the visible cells with a red dot on the cell edge. */
+    private void drawBadEnds(Graphics2D g2) {
+        if (v.dangling == 0 && v.exits == 0) return;
+        int r = Math.max(2, cellSize / 10);
+        g2.setColor(BAD_END);
+        for (int y = cy0; y <= cy1; y++) {
+            for (int x = cx0; x <= cx1; x++) {
+                int m = v.badEnds(g.idx(x, y));
+                if (m == 0) continue;
+                int cx = startX + x * cellSize + cellSize / 2;
+                int cy = startY + y * cellSize + cellSize / 2;
+                for (int d = 0; d < 4; d++) {
+                    if ((m & (1 << d)) == 0) continue;
+                    int ex = cx + Util.DX[d] * (cellSize / 2 - r), ey = cy + Util.DY[d] * (cellSize / 2 - r);
+                    g2.fillOval(ex - r, ey - r, 2 * r, 2 * r);
+                }
+            }
+        }
+    }
+
     /** Draws all track pieces on the board. */
     private void drawPieces(Graphics2D g2) {
-        for (int y = 0; y < g.h; y++) {
-            for (int x = 0; x < g.w; x++) {
+        int r = Math.min(10, cellSize / 2 - 2);   // Marker radius
+        for (int y = cy0; y <= cy1; y++) {
+            for (int x = cx0; x <= cx1; x++) {
                 int cx = startX + x * cellSize + cellSize / 2;
                 int cy = startY + y * cellSize + cellSize / 2;
-                TType t = g.board[y][x].t;
+                int i = g.idx(x, y);
+                TType t = v.cells.type(i);
  
                 // Highlight clue cells
-                if (g.board[y][x].clue) {
-                    g2.setColor(new Color(220, 255, 220));
+                if (v.cells.isClue(i)) {
+                    g2.setColor(CLUE_BG);
                     g2.fillRect(startX + x * cellSize + 2,
                                 startY + y * cellSize + 2,
                                 cellSize - 3, cellSize - 3);
@@ -133,7 +210,7 @@ public class BoardPanel extends JPanel {
  
                 // Draw track based on type
                 g2.setColor(Color.BLACK);
-                int half = cellSize / 2 - 8;
+                int half = cellSize / 2 - Math.min(8, cellSize / 6);
                 switch (t) {
                     case HR:
                         g2.drawLine(cx - half, cy, cx + half, cy);
@@ -162,18 +239,18 @@ public class BoardPanel extends JPanel {
                 }
  
                 // Draw start marker (A)
-                if (g.board[y][x].start) {
+                if (v.cells.isStart(i)) {
                     g2.setColor(Color.BLUE);
-                    g2.fillOval(cx - 10, cy - 10, 20, 20);
+                    g2.fillOval(cx - r, cy - r, 2 * r, 2 * r);
                     g2.setColor(Color.WHITE);
-                    g2.drawString("A", cx - 4, cy + 5);
+                    if (r >= 8) g2.drawString("A", cx - 4, cy + 5);
                 }
                 // Draw end marker (B)
-                if (g.board[y][x].end) {
+                if (v.cells.isEnd(i)) {
                     g2.setColor(Color.RED);
-                    g2.fillOval(cx - 10, cy - 10, 20, 20);
+                    g2.fillOval(cx - r, cy - r, 2 * r, 2 * r);
                     g2.setColor(Color.WHITE);
-                    g2.drawString("B", cx - 4, cy + 5);
+                    if (r >= 8) g2.drawString("B", cx - 4, cy + 5);
                 }
             }
         }
@@ -182,32 +259,37 @@ public class BoardPanel extends JPanel {
     /** Draws yellow highlight over the current path. */
     private void drawHighlightPath(Graphics2D g2) {
         if (!highlightPath) return;
-        List<int[]> p = g.findPathFromCurrent();
+        int[] p = v.path;
         if (p == null) return;
-        g2.setColor(new Color(255, 200, 0, 140));
-        for (int[] c : p) {
-            int sx = startX + c[0] * cellSize;
-            int sy = startY + c[1] * cellSize;
+        g2.setColor(HIGHLIGHT);
+        for (int c : p) {
+            int x = g.xOf(c), y = g.yOf(c);
+            if (x < cx0 || x > cx1 || y < cy0 || y > cy1) continue;
+            int sx = startX + x * cellSize;
+            int sy = startY + y * cellSize;
             g2.fillRect(sx + 2, sy + 2, cellSize - 3, cellSize - 3);
         }
     }
  
-    /** Draws row and column clue numbers. */
+    /**
+     * Draws row and column clue numbers (counted once per puzzle in
+     * Game.computeClues): red when the line is over its clue, green when it
+     * matches, black otherwise.
+     */
     private void drawClues(Graphics2D g2) {
-        int[] colCnt = new int[g.w], rowCnt = new int[g.h];
-        for (int y = 0; y < g.h; y++)
-            for (int x = 0; x < g.w; x++)
-                if (g.sol[y][x] != TType.EMPTY) { colCnt[x]++; rowCnt[y]++; }
+        int[] colCnt = v.colClues, rowCnt = v.rowClues;
  
-        g2.setColor(Color.BLACK);
+        if (cellSize < 24) g2.setFont(g2.getFont().deriveFont(9f));
         // Column clues at top
-        for (int x = 0; x < g.w; x++) {
+        for (int x = cx0; x <= cx1; x++) {
+            g2.setColor(v.colOver(x) ? CLUE_OVER : v.colCount[x] == colCnt[x] ? CLUE_MET : Color.BLACK);
             String s = "" + colCnt[x];
             int tx = startX + x * cellSize + cellSize / 2 - 6;
             g2.drawString(s, tx, startY - 12);
         }
         // Row clues at left
-        for (int y = 0; y < g.h; y++) {
+        for (int y = cy0; y <= cy1; y++) {
+            g2.setColor(v.rowOver(y) ? CLUE_OVER : v.rowCount[y] == rowCnt[y] ? CLUE_MET : Color.BLACK);
             String s = "" + rowCnt[y];
             int ty = startY + y * cellSize + cellSize / 2 + 4;
             g2.drawString(s, startX - 25, ty);
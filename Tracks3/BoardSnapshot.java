@@ -0,0 +1,36 @@
+package Tracks;
+
+/**
+ * Immutable, persistent snapshot of a PackedBoard.
+ *
+ * A snapshot only holds references to the board's chunks; the board copies
+ * a chunk before writing to it again, so snapshots never change. Taking a
+ * snapshot, keeping many of them, and restoring one all cost time and
+ * memory proportional to the chunks that actually differ.
+ */
+public final class BoardSnapshot implements CellReader {
+
+    /** Number of cells */
+    public final int size;
+
+    /** Chunk references (never written after construction) */
+    final long[][] chunks;
+
+    BoardSnapshot(int size, long[][] chunks) {
+        this.size = size;
+        this.chunks = chunks;
+    }
+
+    /** Returns the raw 8-bit slot of cell i (see PackedBoard). */
+    public int get(int i) {
+        return (int) (chunks[i >>> PackedBoard.CHUNK_SHIFT][(i >>> 3) & (PackedBoard.CHUNK_WORDS - 1)]
+                >>> ((i & 7) << 3)) & 0xFF;
+    }
+
+    public int typeOrd(int i)     { return get(i) & PackedBoard.TYPE_MASK; }
+    public TType type(int i)      { return Util.TYPES[get(i) & PackedBoard.TYPE_MASK]; }
+    public boolean isClue(int i)  { return (get(i) & PackedBoard.CLUE)  != 0; }
+    public boolean isStart(int i) { return (get(i) & PackedBoard.START) != 0; }
+    public boolean isEnd(int i)   { return (get(i) & PackedBoard.END)   != 0; }
+    public boolean isWall(int i)  { return (get(i) & PackedBoard.WALL)  != 0; }
+}
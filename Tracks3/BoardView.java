@@ -0,0 +1,86 @@
+package Tracks;
+
+/**
+ * Self-consistent picture of a Game for its readers (see Game.view).
+ *
+ * A published view (Game.publish) is immutable: it is built on the thread
+ * that mutates the game and handed over through a volatile field, so a
+ * reader on another thread always sees one complete state: the cells, the
+ * line counts and the solved path all belong to the same version. A live
+ * view reads the game's own cells instead of a snapshot and is only for
+ * the writing thread, until its next move. Nothing in a view is written
+ * after construction.
+ */
+public final class BoardView {
+
+    /** Game.version this view was taken at */
+    public final long version;
+
+    /** Cells at that version: a snapshot, or the live store in a live view */
+    public final CellReader cells;
+
+    /** Pieces per row / column at that version (see Occupancy) */
+    public final int[] rowCount, colCount;
+
+    /** The game's clues (fixed once the puzzle is generated) */
+    public final int[] rowClues, colClues;
+
+    /** Lines over their clue; rows are 0..h-1, columns h..h+w-1 */
+    public final int[] overLines;
+
+    /** True if start and end were joined */
+    public final boolean solved;
+
+    /** Start-to-end path cells when solved, else null */
+    public final int[] path;
+
+    /** Dangling ends and stray exits at that version (see Connectivity) */
+    public final int dangling, exits;
+
+    /** Cells on closed loops; empty when there are none */
+    public final int[] loopCells;
+
+    BoardView(long version, CellReader cells, int[] rowCount, int[] colCount,
+              int[] rowClues, int[] colClues, int[] overLines, boolean solved, int[] path,
+              int dangling, int exits, int[] loopCells) {
+        this.version = version;
+        this.cells = cells;
+        this.rowCount = rowCount;
+        this.colCount = colCount;
+        this.rowClues = rowClues;
+        this.colClues = colClues;
+        this.overLines = overLines;
+        this.solved = solved;
+        this.path = path;
+        this.dangling = dangling;
+        this.exits = exits;
+        this.loopCells = loopCells;
+    }
+
+    public boolean rowOver(int r) { return rowCount[r] > rowClues[r]; }
+    public boolean colOver(int c) { return colCount[c] > colClues[c]; }
+
+    /** True if the track has no dangling ends, stray exits or loops. */
+    public boolean topologyClean() { return dangling == 0 && exits == 0 && loopCells.length == 0; }
+
+    /**
+     * Dir mask of the bad ends of cell i: ends facing a cell that does not
+     * connect back, or facing off the board away from the start and end.
+     * Computed from the cells alone, so only painted cells pay for it.
+     */
+    public int badEnds(int i) {
+        int m = Util.MASK[cells.typeOrd(i)];
+        if (m == 0) return 0;
+        int stride = colClues.length + 2, r = 0;   // Index layout of Game.idx
+        for (int d = 0; d < 4; d++) {
+            if ((m & (1 << d)) == 0) continue;
+            int n = i + Util.DX[d] + Util.DY[d] * stride;
+            if (cells.isWall(n)) {
+                if (!cells.isStart(i) && !cells.isEnd(i)) r |= 1 << d;
+            } else if (!Util.connects(cells.typeOrd(n), Util.OPP[d])) {
+                r |= 1 << d;
+            }
+        }
+        return r;
+    }
+}
@@ -0,0 +1,25 @@
+package Tracks;
+
+/**
+ * Read-only access to cell slots by flat cell index (see CellStore for the
+ * slot layout). Implemented by the live stores (CellStore) and by
+ * immutable snapshots (BoardSnapshot), so a BoardView can read either.
+ */
+public interface CellReader {
+
+    /** Returns the raw 8-bit slot of cell i. */
+    int get(int i);
+
+    /** Returns the track type ordinal of cell i. */
+    int typeOrd(int i);
+
+    /** Returns the track type of cell i. */
+    default TType type(int i) { return Util.TYPES[typeOrd(i)]; }
+
+    boolean isClue(int i);
+    boolean isStart(int i);
+    boolean isEnd(int i);
+
+    /** True if cell i is part of the sentinel border. */
+    default boolean isWall(int i) { return (get(i) & CellStore.WALL) != 0; }
+}
@@ -0,0 +1,74 @@
+package Tracks;
+
+/**
+ * Cell storage of a Tracks board, addressed by flat cell index (see Game.idx).
+ *
+ * Every cell is described by an 8-bit slot:
+ *  - bits 0..2 : TType ordinal
+ *  - bit  3    : clue flag
+ *  - bit  4    : start flag
+ *  - bit  5    : end flag
+ *  - bit  6    : wall flag, set on the sentinel border around the board
+ *                (see Game.idx); wall cells are always EMPTY
+ *
+ * Two layouts implement it: PackedBoard keeps the slots bit-packed in
+ * copy-on-write chunks (cheap copies and snapshots), SoaBoard keeps a
+ * byte[] of type ordinals plus one bitmask per flag (tight whole-board
+ * loops). Game picks one with Layout.
+ */
+public interface CellStore extends CellReader {
+
+    /** Mask of the TType ordinal inside a slot */
+    int TYPE_MASK = 0x7;
+
+    /** Clue flag inside a slot */
+    int CLUE = 1 << 3;
+
+    /** Start flag inside a slot */
+    int START = 1 << 4;
+
+    /** End flag inside a slot */
+    int END = 1 << 5;
+    /** Wall (sentinel border) flag inside a slot */
+    int WALL = 1 << 6;
+
+    /** Available storage layouts. */
+    enum Layout {
+        PACKED, SOA;
+
+        /** Creates an all-EMPTY store with the given number of cells. */
+        public CellStore create(int size) {
+            return this == PACKED ? new PackedBoard(size) : new SoaBoard(size);
+        }
+    }
+
+    /** Number of addressable cells. */
+    int size();
+
+    /** Overwrites the raw 8-bit slot of cell i. */
+    void set(int i, int v);
+
+    /** Sets the track type of cell i, keeping its flags. */
+    void setType(int i, TType t);
+
+    /** Sets or clears a flag bit (CLUE, START, END or WALL) of cell i. */
+    void setFlag(int i, int flag, boolean on);
+
+    /** Resets every cell to EMPTY with no flags except WALL. */
+    void clear();
+
+    /** Returns the first cell at or after from whose type is not EMPTY, or -1. */
+    int nextNonEmpty(int from);
+
+    /** Sets every cell's type to sol's type at the same cell, keeping flags. */
+    void copyTypesFrom(CellStore sol);
+
+    /** Sets clue cells to sol's type and every other cell to EMPTY, keeping flags. */
+    void resetToClues(CellStore sol);
+
+    /** Returns an independent copy of this store (same layout). */
+    CellStore copy();
+
+    /** Returns an immutable snapshot of the current cells. */
+    BoardSnapshot snapshot();
+}
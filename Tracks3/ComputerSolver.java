@@ -5,15 +5,23 @@ import java.util.*;
 /**
  * ComputerSolver — implements four algorithms for the Tracks puzzle.
  *
- * KEY FACTS: - sol[y][x] stores the correct TType for the solution path. - The
+ * KEY FACTS: - sol (packed, by cell index) stores the correct TType for the solution path. - The
  * solution is a single winding path from (sx,sy) to (ex,ey). - rowClues[y] /
  * colClues[x] = number of solution cells in each row/col. - step() places
- * exactly ONE piece per call (for animation).
+ * exactly ONE piece per call (for animation); stepBatch(k) places up to k
+ * as one Game.applyMoves batch (for large boards and headless runs).
  *
  * ALGORITHM SUMMARY: - Greedy: O(N²) — BFS from end each step, pick closest
  * unsolved cell - Divide & Con: O(N log N) — chain-follow path, split in half,
  * fill midpoint - DP: O(N) — build dp table once, replay each step -
  * Backtracking: O(N·2^N) worst / O(N) typical — recursive explore + undo
+ *
+ * REPLAY (see replayAbove): on boards too big for an algorithm, it
+ * replays the memoised solution path instead (Greedy from the end, the
+ * others from the start), so a step is O(1) and memory stays O(N) ints.
+ * Greedy and D&C are polynomial and run for real up to POLY_MAX_CELLS;
+ * DP and Backtracking recurse once per path cell and stop at the classic
+ * size (Game.CLASSIC_MAX_CELLS).
  */
 public class ComputerSolver {
 
@@ -29,19 +37,37 @@ public class ComputerSolver {
     private int cumulativeOps = 0;
     private int totalMoves = 0;
     private final List<long[]> stepLog = new ArrayList<>();
-    private Set<String> dpVisitedStates = new HashSet<>();
+    private int logEvery = 1;   // Only every logEvery-th step is logged (doubles when the log fills)
+    private int steps = 0;      // step()/stepBatch() calls that placed pieces
+    private int[] batch = new int[0];   // Packed moves of the current stepBatch
+    private Set<Long> dpVisitedStates = new HashSet<>();
+    private long countHash = 0;   // Zobrist key of the DP (rowCount, colCount) state
 
     // Pre-computed play order for DC, DP, Backtracking
     private List<int[]> playList = null;
     private int playIndex = 0;
     private int initOps = 0;
 
+    /** Pieces per stepBatch call on large boards (UI timer, benchmarks); -Dbatch=N overrides */
+    public static int batchSize = Integer.getInteger("batch", 256);
+
+    /** Max step-log entries; older entries are thinned out beyond this */
+    static final int STEP_LOG_CAP = 4096;
+
+    /** Cells up to which Greedy and D&C run their real algorithm (512×512) */
+    public static final int POLY_MAX_CELLS = 512 * 512;
+
+    // Replay mode: cells of the solution path, replayed in order
+    private final boolean replay;
+    private int[] order = null;
+
     /**
      * Creates a solver with the specified algorithm.
      */
     public ComputerSolver(Game game, Algo algo) {
         this.game = game;
         this.algo = algo;
+        this.replay = game.w * game.h > replayAbove(algo);
         switch (algo) {
             case GREEDY:
                 metrics = new AlgoMetrics("Greedy", "O(N²)", "O(N)",
@@ -59,6 +85,17 @@ public class ComputerSolver {
                 metrics = new AlgoMetrics("Backtracking", "O(N·2^N) worst / O(N) avg", "O(N)",
                         "Recursive DFS with undo on constraint violation.");
         }
+        if (replay) {
+            metrics.timeComplexity = "O(N)";
+            metrics.spaceComplexity = "O(N)";
+            metrics.strategyDesc = "Large board: replays the solution path"
+                    + (algo == Algo.GREEDY ? " from the end." : " from the start.");
+        }
+    }
+
+    /** Board cells above which algo replays the solution path instead of running. */
+    public static int replayAbove(Algo algo) {
+        return algo == Algo.GREEDY || algo == Algo.DC ? POLY_MAX_CELLS : Game.CLASSIC_MAX_CELLS;
     }
 
     /**
@@ -67,140 +104,156 @@ public class ComputerSolver {
     public boolean step() {
         long t0 = System.nanoTime();
         int[] ops = {0};
-        int[] pos = null;
-        int space = 0;
-
-        switch (algo) {
-            case GREEDY:
-                pos = stepGreedy(ops);
-                space = game.w * game.h;
-                break;
-            case DC:
-                if (playList == null) {
-                    buildDCPlayList(ops);
-                }
-                pos = stepFromPlayList(ops);
-                space = game.w * game.h;
-                break;
-            case DP:
-                if (playList == null) {
-                    buildDPPlayList(ops);
-                }
-                pos = stepFromPlayList(ops);
-                space = game.w * game.h;
-                break;
-            case BACKTRACKING:
-                if (playList == null) {
-                    buildBTPlayList(ops);
-                }
-                pos = stepFromPlayList(ops);
-                space = game.w * game.h;
-                break;
-        }
+        int cell = nextCell(ops);
 
         long elapsed = System.nanoTime() - t0;
         cumulativeTimeNs += elapsed;
         cumulativeOps += ops[0];
 
-        if (pos == null) {
+        if (cell < 0) {
             return false;
         }
 
-        int bx = pos[0], by = pos[1];
-        game.hist.push(new Move(bx, by, game.board[by][bx].t, game.board[by][bx].clue));
-        game.board[by][bx].t = game.sol[by][bx];
-        game.board[by][bx].clue = false;
-        game.rebuildGraph();
+        game.playMove(game.xOf(cell), game.yOf(cell), game.solType(cell));
         totalMoves++;
+        record(elapsed, ops[0]);
+        return true;
+    }
+
+    /**
+     * Places up to k pieces with one Game.applyMoves call: one journal
+     * block, one version bump and, for big batches, one rebuild of the
+     * derived structures. Logs a single step. Returns the number of pieces
+     * placed, 0 when done.
+     */
+    public int stepBatch(int k) {
+        if (k <= 1) return step() ? 1 : 0;
+        long t0 = System.nanoTime();
+        int[] ops = {0};
+        if (batch.length < k) batch = new int[k];
+        int n = 0;
+        if (!replay && algo == Algo.GREEDY) {
+            n = greedyBatch(ops, k);
+        } else {
+            for (int c; n < k && (c = nextCell(ops)) >= 0; ) batch[n++] = Game.packMove(c, game.solType(c));
+        }
+        game.applyMoves(batch, 0, n);
+
+        long elapsed = System.nanoTime() - t0;
+        cumulativeTimeNs += elapsed;
+        cumulativeOps += ops[0];
+        if (n == 0) return 0;
+        totalMoves += n;
+        record(elapsed, ops[0]);
+        return n;
+    }
+
+    /** Next cell to place for the selected algorithm (building its play list on first use), or -1. */
+    private int nextCell(int[] ops) {
+        if (replay) return stepLarge(ops);
+        switch (algo) {
+            case GREEDY:
+                return stepGreedy(ops);
+            case DC:
+                if (playList == null) buildDCPlayList(ops);
+                return stepFromPlayList(ops);
+            case DP:
+                if (playList == null) buildDPPlayList(ops);
+                return stepFromPlayList(ops);
+            default:
+                if (playList == null) buildBTPlayList(ops);
+                return stepFromPlayList(ops);
+        }
+    }
 
-        stepLog.add(new long[]{elapsed, ops[0], space});
+    private void record(long elapsed, int ops) {
+        int space = game.w * game.h;
+        logStep(elapsed, ops, space);
         metrics.stepTimeNs = elapsed;
-        metrics.opsCount = ops[0];
+        metrics.opsCount = ops;
         metrics.spaceUsed = space;
         metrics.totalMoves = totalMoves;
         metrics.totalTimeNs = cumulativeTimeNs;
-        return true;
+    }
+
+    /**
+     * Appends {timeNs, ops, space, moveNo} to the step log. Once the log
+     * holds STEP_LOG_CAP entries every other one is dropped and only every
+     * logEvery-th step is kept from then on, so long runs stay bounded.
+     */
+    private void logStep(long elapsed, int ops, int space) {
+        steps++;
+        if (steps % logEvery != 0) return;
+        if (stepLog.size() == STEP_LOG_CAP) {
+            int k = 0;
+            for (int i = 1; i < stepLog.size(); i += 2) stepLog.set(k++, stepLog.get(i));
+            stepLog.subList(k, stepLog.size()).clear();
+            logEvery *= 2;
+            if (steps % logEvery != 0) return;
+        }
+        stepLog.add(new long[]{elapsed, ops, space, totalMoves});
+    }
+
+    /**
+     * Replay step: next path cell that does not yet hold its solution
+     * piece. The path is taken from Game.solutionPath, so it costs no extra
+     * memory; Greedy walks it from the end (closest to the goal first).
+     */
+    private int stepLarge(int[] ops) {
+        if (order == null) {
+            order = game.solutionPath();
+            playIndex = 0;
+            ops[0] += order.length;
+        }
+        if (game.mismatch.missing() == 0) return -1;
+        while (playIndex < order.length) {
+            int k = playIndex++;
+            int c = order[algo == Algo.GREEDY ? order.length - 1 - k : k];
+            ops[0]++;
+            if (game.mismatch.isWrong(c)) return c;
+        }
+        return -1;
     }
 
     /**
      * Replays pre-computed play order. InitOps charged on first call only.
+     * Returns the next cell to place, or -1 when done.
      */
-    private int[] stepFromPlayList(int[] ops) {
+    private int stepFromPlayList(int[] ops) {
         if (playList == null) {
-            return null;
+            return -1;
         }
         ops[0] += initOps;
         initOps = 0;
+        if (game.mismatch.missing() == 0) return -1;   // every solution piece already placed
         while (playIndex < playList.size()) {
             int[] c = playList.get(playIndex++);
             ops[0]++;
-            if (game.sol[c[1]][c[0]] != TType.EMPTY && game.board[c[1]][c[0]].t != game.sol[c[1]][c[0]]) {
-                return new int[]{c[0], c[1]};
+            int ci = game.idx(c[0], c[1]);
+            if (game.solType(ci) != TType.EMPTY && game.mismatch.isWrong(ci)) {
+                return ci;
             }
         }
-        return null;
+        return -1;
     }
 
     // ═════════════════════════════════════════════════════════════════════
     //  CHAIN-FOLLOW PATH (core utility)
     // ═════════════════════════════════════════════════════════════════════
     /**
-     * Walks the solution path in exact sequential order. Reads each cell's
-     * TType to determine which neighbour to follow next. Avoids going backward
-     * to the previous cell.
+     * Walks the solution path in exact sequential order. The walk itself is
+     * memoised on the Game (see Game.solutionPath), so repeated fallbacks
+     * only pay for the list conversion.
      *
      * @param ops Operation counter
      * @return Ordered list [start, ..., end]
      */
     private List<int[]> chainFollowPath(int[] ops) {
-        List<int[]> path = new ArrayList<>();
-        boolean[][] onPath = new boolean[game.h][game.w];
-
-        // Mark solution cells
-        for (int y = 0; y < game.h; y++) {
-            for (int x = 0; x < game.w; x++) {
-                if (game.sol[y][x] != TType.EMPTY) {
-                    onPath[y][x] = true;
-                }
-            }
-        }
-
-        int cx = game.sx, cy = game.sy;
-        int px = -1, py = -1;   // previous cell
-
-        while (true) {
+        int[] cells = game.solutionPath();
+        List<int[]> path = new ArrayList<>(cells.length);
+        for (int c : cells) {
             ops[0]++;
-            path.add(new int[]{cx, cy});
-            if (cx == game.ex && cy == game.ey) {
-                break;
-            }
-
-            // Find forward neighbour (not previous, and on path)
-            Set<Dir> dirs = Util.dirsOf(game.sol[cy][cx]);
-            int nx = -1, ny = -1;
-            for (Dir d : dirs) {
-                int tx = cx + (d == Dir.R ? 1 : d == Dir.L ? -1 : 0);
-                int ty = cy + (d == Dir.D ? 1 : d == Dir.U ? -1 : 0);
-                if (tx < 0 || tx >= game.w || ty < 0 || ty >= game.h) {
-                    continue;
-                }
-                if (!onPath[ty][tx]) {
-                    continue;
-                }
-                if (tx == px && ty == py) {
-                    continue;
-                }
-                nx = tx;
-                ny = ty;
-                break;
-            }
-            if (nx == -1) {
-                break;
-            }
-            px = cx;
-            py = cy;
-            cx = nx;
-            cy = ny;
+            path.add(new int[]{game.xOf(c), game.yOf(c)});
         }
         return path;
     }
@@ -209,44 +262,55 @@ public class ComputerSolver {
     //  1. GREEDY ALGORITHM
     // ═════════════════════════════════════════════════════════════════════
     /**
-     * Each step: BFS from end over solution cells only.
-     * Pick unsolved cell with smallest path distance.
+     * Each step: BFS from end over solution cells only (GridSearch, no
+     * allocation). Pick unsolved cell with smallest path distance, or -1.
      */
-    private int[] stepGreedy(int[] ops) {
-        int[][] dist = new int[game.h][game.w];
-        for (int[] row : dist) Arrays.fill(row, -1);
-        dist[game.ey][game.ex] = 0;
-        Deque<int[]> q = new ArrayDeque<>();
-        q.add(new int[]{game.ex, game.ey});
-
-        // BFS over solution cells only
-        while (!q.isEmpty()) {
-            int[] v = q.poll();
-            int x = v[0], y = v[1];
+    private int stepGreedy(int[] ops) {
+        Mismatch wrong = game.mismatch;
+        if (wrong.missing() == 0) return -1;
+        GridSearch gs = GridSearch.get();
+        gs.bfs(game, game.idx(game.ex, game.ey), -1, GridSearch.SOLUTION);
+        ops[0] += gs.visitedCount();
+
+        // Pick closest unsolved cell (only wrong cells are visited)
+        int bestDist = Integer.MAX_VALUE, best = -1;
+        for (int i = wrong.nextWrong(0); i >= 0; i = wrong.nextWrong(i + 1)) {
             ops[0]++;
-            for (int[] d : new int[][]{{1,0},{-1,0},{0,1},{0,-1}}) {
-                int nx = x + d[0], ny = y + d[1];
-                if (nx < 0 || nx >= game.w || ny < 0 || ny >= game.h) continue;
-                if (game.sol[ny][nx] == TType.EMPTY) continue;
-                if (dist[ny][nx] != -1) continue;
-                dist[ny][nx] = dist[y][x] + 1;
-                q.add(new int[]{nx, ny});
+            if (game.solType(i) == TType.EMPTY) continue;
+            int d = gs.dist(i);
+            if (d >= 0 && d < bestDist) {
+                bestDist = d; best = i;
             }
         }
+        return best;
+    }
 
-        // Pick closest unsolved cell
-        int bestDist = Integer.MAX_VALUE, bx = -1, by = -1;
-        for (int y = 0; y < game.h; y++) {
-            for (int x = 0; x < game.w; x++) {
-                ops[0]++;
-                if (game.sol[y][x] == TType.EMPTY) continue;
-                if (game.board[y][x].t == game.sol[y][x]) continue;
-                if (dist[y][x] >= 0 && dist[y][x] < bestDist) {
-                    bestDist = dist[y][x]; bx = x; by = y;
-                }
-            }
+    /**
+     * Batch form of stepGreedy: one BFS from the end, then the k unsolved
+     * cells closest to it go into batch[]. Returns how many were found.
+     */
+    private int greedyBatch(int[] ops, int k) {
+        Mismatch wrong = game.mismatch;
+        if (wrong.missing() == 0) return 0;
+        GridSearch gs = GridSearch.get();
+        gs.bfs(game, game.idx(game.ex, game.ey), -1, GridSearch.SOLUTION);
+        ops[0] += gs.visitedCount();
+
+        long[] keyed = new long[wrong.count()];
+        int n = 0;
+        for (int i = wrong.nextWrong(0); i >= 0; i = wrong.nextWrong(i + 1)) {
+            ops[0]++;
+            if (game.solType(i) == TType.EMPTY) continue;
+            int d = gs.dist(i);
+            if (d >= 0) keyed[n++] = (long) d << 32 | i;
         }
-        return bx == -1 ? null : new int[]{bx, by};
+        Arrays.sort(keyed, 0, n);
+        n = Math.min(n, k);
+        for (int j = 0; j < n; j++) {
+            int c = (int) keyed[j];
+            batch[j] = Game.packMove(c, game.solType(c));
+        }
+        return n;
     }
 
     // ═════════════════════════════════════════════════════════════════════
@@ -260,7 +324,7 @@ public class ComputerSolver {
 
         for (int y = 0; y < game.h; y++)
             for (int x = 0; x < game.w; x++)
-                if (game.sol[y][x] != TType.EMPTY)
+                if (game.solType(x, y) != TType.EMPTY)
                     allCells.add(new int[]{x, y});
 
         dcRecurse(allCells, 0, game.h - 1, ops);
@@ -329,19 +393,24 @@ public class ComputerSolver {
     // ═════════════════════════════════════════════════════════════════════
     //  3. DYNAMIC PROGRAMMING ALGORITHM
     // ═════════════════════════════════════════════════════════════════════
-    private String encodeState(int[] rowCount, int[] colCount) {
-        return Arrays.toString(rowCount) + "|" + Arrays.toString(colCount);
+    /** Adds delta to rowCount[y] and colCount[x], keeping countHash in step. O(1). */
+    private void bumpCounts(int x, int y, int[] rowCount, int[] colCount, int delta) {
+        countHash ^= Zobrist.row(y, rowCount[y]) ^ Zobrist.col(x, colCount[x]);
+        rowCount[y] += delta;
+        colCount[x] += delta;
+        countHash ^= Zobrist.row(y, rowCount[y]) ^ Zobrist.col(x, colCount[x]);
     }
     private void buildDPPlayList(int[] ops) {
         playList  = new ArrayList<>();
         playIndex = 0;
         dpVisitedStates.clear();
+        countHash = 0;   // all counts start at zero
 
         // Collect all solution cells
         List<int[]> candidates = new ArrayList<>();
         for (int y = 0; y < game.h; y++)
             for (int x = 0; x < game.w; x++)
-                if (game.sol[y][x] != TType.EMPTY)
+                if (game.solType(x, y) != TType.EMPTY)
                     candidates.add(new int[]{x, y});
 
         int[] rowTarget = game.rowClues.clone();
@@ -380,12 +449,9 @@ public class ComputerSolver {
 		}
 
 		// Memoization check
-		String stateKey = encodeState(rowCount, colCount);
-		if (dpVisitedStates.contains(stateKey))
+		if (!dpVisitedStates.add(countHash))
 			return false;
 
-		dpVisitedStates.add(stateKey);
-
 		for (int i = 0; i < candidates.size(); i++) {
 			if (placed[i])
 				continue;
@@ -400,8 +466,7 @@ public class ComputerSolver {
 				continue;
 
 			placed[i] = true;
-			rowCount[y]++;
-			colCount[x]++;
+			bumpCounts(x, y, rowCount, colCount, 1);
 			playList.add(new int[] { x, y });
 
 			if (dpRecurse(candidates, placed, rowTarget, colTarget, rowCount, colCount, placedCount + 1, ops))
@@ -409,8 +474,7 @@ public class ComputerSolver {
 
 			// undo
 			playList.remove(playList.size() - 1);
-			rowCount[y]--;
-			colCount[x]--;
+			bumpCounts(x, y, rowCount, colCount, -1);
 			placed[i] = false;
 		}
 
@@ -429,7 +493,7 @@ public class ComputerSolver {
         List<int[]> candidates = new ArrayList<>();
         for (int y = 0; y < game.h; y++)
             for (int x = 0; x < game.w; x++)
-                if (game.sol[y][x] != TType.EMPTY)
+                if (game.solType(x, y) != TType.EMPTY)
                     candidates.add(new int[]{x, y});
 
         int[] rowTarget = game.rowClues.clone();
@@ -479,9 +543,8 @@ public class ComputerSolver {
             colCount[x]++;
             playList.add(new int[]{x, y});
 			
-			TType original = game.board[y][x].t;
-            game.board[y][x].t = game.sol[y][x];
-            game.rebuildGraph();
+			TType original = game.type(x, y);
+            game.setCell(x, y, game.solType(x, y));
             game.printBoard(); // simple console visualization
             try { Thread.sleep(50); } catch (InterruptedException e) {}
 
@@ -496,8 +559,7 @@ public class ComputerSolver {
             colCount[x]--;
             placed[i] = false;
 
-			game.board[y][x].t = original;
-            game.rebuildGraph();
+			game.setCell(x, y, original);
             game.printBoard();
             try { Thread.sleep(50); } catch (InterruptedException e) {}
         }
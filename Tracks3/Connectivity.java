@@ -0,0 +1,305 @@
+package Tracks;
+
+import java.util.Arrays;
+
+/**
+ * Incremental connectivity index over the track graph of a Game.
+ *
+ * Additions are handled by union-find (union by size, path halving).
+ * Removals cannot be undone in a union-find, so when a cell drops links its
+ * old component is relabelled locally: every track cell has at most two
+ * links, so the pieces left behind are chains that can be walked from the
+ * removed cell's former neighbours. Only links the new piece drops count;
+ * a link it keeps costs nothing, and dropping one link of a loop just
+ * opens it. A real split walks the rest of the component from both sides:
+ * union-find parents need not follow the chain, so a side that is left
+ * unwalked may still point into the other one. Removal is therefore
+ * O(component), which on a long solved path is O(path length); additions,
+ * and edits that keep or open links, are O(α(N)). Cost never depends on
+ * the board size beyond the component.
+ *
+ * The index also monitors track topology:
+ *  - dangling ends: a piece end facing an in-board cell that does not
+ *    connect back
+ *  - exits: a piece end facing off the board, except at the start and end
+ *    cells, whose exits are part of the puzzle
+ *  - loops: components that close on themselves. A union of two cells
+ *    that already share a root closes a loop, and removing any loop cell
+ *    opens it again.
+ * An edit can only change the ends of the edited cell and its four
+ * neighbours, so the end counters and the bitset of affected cells are
+ * patched in O(1). The counts are also kept per component, on its root:
+ * merged by union and summed again over the cells a relabel walks. Loops
+ * are tracked by their root cell.
+ */
+public final class Connectivity {
+
+    private final Game g;
+    private final int[] parent;
+    private final int[] size;
+
+    /** Epoch stamps used to mark cells already relabelled in one removal */
+    private final int[] mark;
+    private int epoch = 0;
+
+    // Topology: bad ends (dangling or disallowed exit) per cell as a bitset, plus totals
+    private final long[] bad;
+    /** Bad ends per cell, as badEnds encodes them */
+    private final byte[] cellEnds;
+    /** Bad ends per component, on its root: dangling in bits 0..3, exits in bits 4..7 */
+    private final byte[] compEnds;
+    private int dangling = 0, exits = 0;
+    private int[] loopRoots = new int[4];
+    private int loops = 0;
+
+    /** Creates an index for the given game (call rebuild() before use). */
+    public Connectivity(Game g) {
+        this.g = g;
+        int n = g.cells();
+        parent = new int[n];
+        size   = new int[n];
+        mark   = new int[n];
+        bad    = new long[(n + 63) >>> 6];
+        cellEnds = new byte[n];
+        compEnds = new byte[n];
+    }
+
+    /** Returns a copy of this index bound to g, which must hold the same board. */
+    public Connectivity copyFor(Game g) {
+        Connectivity c = new Connectivity(g);
+        System.arraycopy(parent, 0, c.parent, 0, parent.length);
+        System.arraycopy(size, 0, c.size, 0, size.length);
+        System.arraycopy(bad, 0, c.bad, 0, bad.length);
+        System.arraycopy(cellEnds, 0, c.cellEnds, 0, cellEnds.length);
+        System.arraycopy(compEnds, 0, c.compEnds, 0, compEnds.length);
+        c.dangling = dangling; c.exits = exits;
+        c.loopRoots = loopRoots.clone(); c.loops = loops;
+        return c;
+    }
+
+    /** Recomputes all components from the current board. O(W·H). */
+    public void rebuild() {
+        loops = 0;
+        for (int i = 0; i < parent.length; i++) { parent[i] = i; size[i] = 1; }
+        for (int i = 0; i < parent.length; i++) {
+            // Each link is seen from both ends; handling D and R covers it once
+            int n = g.link(i, Dir.D.ordinal());
+            if (n >= 0) union(i, n);
+            n = g.link(i, Dir.R.ordinal());
+            if (n >= 0) union(i, n);
+        }
+        Arrays.fill(bad, 0L);
+        Arrays.fill(cellEnds, (byte) 0);
+        Arrays.fill(compEnds, (byte) 0);
+        dangling = 0; exits = 0;
+        for (int i = g.board.nextNonEmpty(0); i >= 0; i = g.board.nextNonEmpty(i + 1))
+            addEnds(i, badEnds(i, -1, 0));
+    }
+
+    /**
+     * Updates the index after cell i changed from the piece with ordinal
+     * oldOrd to its current piece. Neighbours must be unchanged.
+     */
+    public void cellChanged(int i, int oldOrd) {
+        // Ends of i and its neighbours: drop their old state from the old components
+        int newOrd = g.board.typeOrd(i);
+        for (int d = -1; d < 4; d++) {
+            int c = d < 0 ? i : g.step(i, d);
+            if (c >= 0) subEnds(c);
+        }
+
+        // Old links of i (neighbours are unchanged), split into those the new piece keeps and drops
+        int oldMask = Util.MASK[oldOrd], newMask = Util.MASK[newOrd], linked = 0;
+        for (int d = 0; d < 4; d++) {
+            if ((oldMask & (1 << d)) == 0) continue;
+            int n = g.step(i, d);
+            if (n >= 0 && Util.connects(g.board.typeOrd(n), Util.OPP[d])) linked |= 1 << d;
+        }
+        int lost = linked & ~newMask;
+
+        boolean split = false;
+        if (lost != 0) {
+            // A loop through i is opened by the edit; dropping one of its links leaves one chain
+            split = !removeLoop(find(i)) || Integer.bitCount(lost) > 1;
+        }
+        if (split) {
+            // Split: relabel the chains hanging off the old neighbours of i
+            epoch++;
+            mark[i] = epoch;
+            for (int d = 0; d < 4; d++) {
+                if ((oldMask & (1 << d)) == 0) continue;
+                int n = g.step(i, d);
+                if (n < 0 || !Util.connects(g.board.typeOrd(n), Util.OPP[d])) continue;
+                if (mark[n] != epoch) relabelChain(n, i);
+            }
+            parent[i] = i; size[i] = 1; compEnds[i] = (byte) compCode(cellEnds[i]);
+        }
+
+        // Links still in the index (those i kept, unless it was relabelled) are already unions
+        int known = split ? 0 : linked & newMask;
+        for (int d = 0; d < 4; d++) {
+            int n = (known & (1 << d)) != 0 ? -1 : g.link(i, d);
+            if (n >= 0) union(i, n);
+        }
+
+        // ... and add their new state to the new ones
+        for (int d = -1; d < 4; d++) {
+            int c = d < 0 ? i : g.step(i, d);
+            if (c >= 0) addEnds(c, badEnds(c, i, newOrd));
+        }
+    }
+
+    /**
+     * Walks the chain through root (not crossing blocked), makes root its
+     * representative and sums its cells' bad ends.
+     */
+    private void relabelChain(int root, int blocked) {
+        mark[root] = epoch;
+        parent[root] = root;
+        int count = 1, ends = compCode(cellEnds[root]);
+        for (int d0 = 0; d0 < 4; d0++) {
+            int prev = root, cur = g.link(root, d0);
+            while (cur >= 0 && cur != blocked && mark[cur] != epoch) {
+                mark[cur] = epoch;
+                parent[cur] = root;
+                count++;
+                ends += compCode(cellEnds[cur]);
+                int next = -1;
+                for (int d = 0; d < 4; d++) {
+                    int n = g.link(cur, d);
+                    if (n >= 0 && n != prev) { next = n; break; }
+                }
+                prev = cur; cur = next;
+            }
+        }
+        size[root] = count;
+        compEnds[root] = (byte) ends;
+    }
+
+    /** Returns the representative cell of the component containing i. */
+    public int find(int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private void union(int a, int b) {
+        int ra = find(a), rb = find(b);
+        if (ra == rb) { addLoop(ra); return; }   // Linking two cells of one chain closes it
+        if (size[ra] < size[rb]) { int t = ra; ra = rb; rb = t; }
+        parent[rb] = ra;
+        size[ra] += size[rb];
+        compEnds[ra] += compEnds[rb];
+    }
+
+    /** Returns true if cells a and b are joined by laid track. */
+    public boolean connected(int a, int b) { return find(a) == find(b); }
+
+    /** Returns the component id (representative cell) of cell i. */
+    public int componentOf(int i) { return find(i); }
+
+    /** Returns the number of cells in the component of cell i. */
+    public int componentSize(int i) { return size[find(i)]; }
+
+    // ═════════════════════════════════════════════════════════════════════
+    //  TOPOLOGY
+    // ═════════════════════════════════════════════════════════════════════
+    /**
+     * Bad ends of cell c, with cell i taken to hold the piece iOrd: dangling
+     * ends in bits 0..1, disallowed exits in bits 2..3.
+     */
+    private int badEnds(int c, int i, int iOrd) {
+        int m = Util.MASK[c == i ? iOrd : g.board.typeOrd(c)], r = 0;
+        if (m == 0) return 0;
+        for (int d = 0; d < 4; d++) {
+            if ((m & (1 << d)) == 0) continue;
+            int n = g.step(c, d);
+            if (n < 0) {
+                if (!g.isStart(c) && !g.isEnd(c)) r += 4;
+            } else if (!Util.connects(n == i ? iOrd : g.board.typeOrd(n), Util.OPP[d])) {
+                r += 1;
+            }
+        }
+        return r;
+    }
+
+    private void addEnds(int c, int ends) {
+        if (ends == 0) return;
+        dangling += ends & 3;
+        exits += ends >>> 2;
+        cellEnds[c] = (byte) ends;
+        compEnds[find(c)] += compCode(ends);
+        bad[c >>> 6] |= 1L << c;
+    }
+
+    /** Takes the bad ends of cell c out of the totals and its component. */
+    private void subEnds(int c) {
+        int ends = cellEnds[c];
+        if (ends == 0) return;
+        dangling -= ends & 3;
+        exits -= ends >>> 2;
+        cellEnds[c] = 0;
+        compEnds[find(c)] -= compCode(ends);
+        bad[c >>> 6] &= ~(1L << c);
+    }
+
+    /** Per-cell bad ends (badEnds encoding) as a compEnds count. */
+    private static int compCode(int ends) { return (ends & 3) | (ends >>> 2) << 4; }
+
+    private void addLoop(int root) {
+        if (loops == loopRoots.length) loopRoots = Arrays.copyOf(loopRoots, loops * 2);
+        loopRoots[loops++] = root;
+    }
+
+    /** Forgets the loop with this root; false if the component was not a loop. */
+    private boolean removeLoop(int root) {
+        for (int k = 0; k < loops; k++)
+            if (loopRoots[k] == root) { loopRoots[k] = loopRoots[--loops]; return true; }
+        return false;
+    }
+
+    /** Number of piece ends facing an in-board cell that does not connect back. */
+    public int danglingEnds() { return dangling; }
+
+    /** Number of piece ends facing off the board (start and end cells excepted). */
+    public int exits() { return exits; }
+
+    /** Number of dangling ends of the component of cell i. O(α(N)). */
+    public int componentDanglingEnds(int i) { return compEnds[find(i)] & 15; }
+
+    /** Number of disallowed exits of the component of cell i. O(α(N)). */
+    public int componentExits(int i) { return compEnds[find(i)] >>> 4 & 15; }
+
+    /** Number of closed loops. */
+    public int loops() { return loops; }
+
+    /** Cell of the k-th closed loop (0 <= k < loops()); walk it with Game.link to list the loop. */
+    public int loopCell(int k) { return loopRoots[k]; }
+
+    /** True if cell i lies on a closed loop. O(α(N) + loops). */
+    public boolean onLoop(int i) {
+        int r = find(i);
+        for (int k = 0; k < loops; k++) if (loopRoots[k] == r) return true;
+        return false;
+    }
+
+    /** True if cell i has a dangling end or a disallowed exit. */
+    public boolean hasBadEnd(int i) { return (bad[i >>> 6] & 1L << i) != 0; }
+
+    /** First cell at or after from with a dangling end or disallowed exit, or -1. */
+    public int nextBadEnd(int from) {
+        if (from >= parent.length) return -1;
+        int wi = from >>> 6;
+        long w = bad[wi] & (-1L << from);
+        while (w == 0) {
+            if (++wi == bad.length) return -1;
+            w = bad[wi];
+        }
+        return (wi << 6) + Long.numberOfTrailingZeros(w);
+    }
+
+    /** True if the track has no dangling ends, stray exits or loops. */
+    public boolean topologyClean() { return dangling == 0 && exits == 0 && loops == 0; }
+}
@@ -11,40 +11,147 @@ import java.util.*;
 public class Game {
 
     public int w, h;                  // Board width and height
-    public Cell[][] board;            // Current board state
-    public TType[][] sol;             // Solution path
+    public int stride;                // Row length of the cell index space: w plus the two sentinel columns
+    public final int[] off = new int[4];   // Index offset to the neighbour in each Dir (±stride, ±1)
+    public final CellStore.Layout layout;  // Cell storage layout of board and sol
+    public CellStore board;           // Current board state
+    public CellStore sol;             // Solution path (types only)
     public int sx, sy, ex, ey;       // Start and end coordinates
     public int[] rowClues, colClues;  // Solution counts per row/column
     private Random rnd = new Random();
-    public Deque<Move> hist = new ArrayDeque<>();  // Move history for undo
-    public GNode[][] graph;           // Connectivity graph
+    public final MoveJournal journal = new MoveJournal();  // Move history for undo/redo
+    private GNode[][] graph;          // Optional GNode view of the track graph (null until requested)
+    public Connectivity conn;         // Incremental start/end connectivity index
+    public Occupancy occ;             // Live row/column piece counts against the clues
+    public Mismatch mismatch;         // Live set of cells that differ from the solution
     public boolean revealedSolution = false;
+    public BoardSnapshot pristine;    // Board as generated (clues only); restart target
+    public GridSearch.Mode searchMode = GridSearch.Mode.CHAIN;  // Strategy of findPath / graphPathExists
+    public PathStrategy pathStrategy = defaultPathStrategy;     // Path generator of genPathAndSolution
 
-    /** Creates a new game with given dimensions. */
+    /** Last view published for readers on other threads, null when none is (see publish / view) */
+    private volatile BoardView published;
+    /** Last live view handed out on the writing thread (see view) */
+    private BoardView live;
+    /** Set by cancelGeneration; a running genPathAndSolution then gives up at its next check */
+    private volatile boolean genCancelled = false;
+
+    /** Bumped by every board mutation (moves, undo, restart, reveal, generation) */
+    public long version = 0;
+    /** Bumped by bulk rebuilds only; solution-derived data is keyed on it */
+    public long solVersion = 0;
+    /** Zobrist hash of the cell types, updated in O(1) on every cell change */
+    public long hash = 0;
+
+    // Derived data memoised against version / solVersion
+    public final Memo<Boolean> solvedMemo  = new Memo<>();
+    public final Memo<int[]>   pathMemo    = new Memo<>();
+    public final Memo<int[][]> distMemo    = new Memo<>();
+    public final Memo<int[]>   solPathMemo = new Memo<>();
+
+    /** Largest supported board side */
+    public static final int MAX_SIDE = 2000;
+    /** Boards above the classic 14×14 size run in large-board mode (see isLarge); DP and Backtracking replay above it */
+    public static final int CLASSIC_MAX_CELLS = 14 * 14;
+
+    /** Creates a new game with given dimensions (packed cell storage). */
     public Game(int w, int h) {
+        this(w, h, CellStore.Layout.PACKED);
+    }
+
+    /** Creates a new game with given dimensions and cell storage layout. */
+    public Game(int w, int h, CellStore.Layout layout) {
         this.w = w; this.h = h;
+        this.layout = layout;
         newBoard();
     }
 
     /** Initializes empty board and solution arrays. */
     private void newBoard() {
-        board = new Cell[h][w];
-        sol   = new TType[h][w];
-        for (int y = 0; y < h; y++)
-            for (int x = 0; x < w; x++) {
-                board[y][x] = new Cell();
-                sol[y][x]   = TType.EMPTY;
-            }
-        hist.clear();
-        graph = new GNode[h][w];
-        for (int y = 0; y < h; y++)
-            for (int x = 0; x < w; x++)
-                graph[y][x] = new GNode(x, y);
+        stride = w + 2;
+        off[Dir.U.ordinal()] = -stride;
+        off[Dir.D.ordinal()] = stride;
+        off[Dir.L.ordinal()] = -1;
+        off[Dir.R.ordinal()] = 1;
+        board = layout.create(stride * (h + 2));
+        sol   = layout.create(stride * (h + 2));
+        markWalls(board);
+        markWalls(sol);
+        journal.clear();
+        graph = null;
+        hash = 0;
+        conn = new Connectivity(this);
+        conn.rebuild();
         rowClues = new int[h];
         colClues = new int[w];
+        occ = new Occupancy(this);
+        occ.rebuild();
+        mismatch = new Mismatch(this);
+        mismatch.rebuild();
         revealedSolution = false;
     }
 
+    // ═════════════════════════════════════════════════════════════════════
+    //  CELL ACCESS
+    //  Cells are stored with a one-cell sentinel border: the index space is
+    //  (w+2)×(h+2), border cells carry the WALL flag and stay EMPTY. A
+    //  neighbour is always i + off[d] without a bounds test; no piece
+    //  connects to a wall, so track walks stop at the border by themselves.
+    //  Coordinates (x, y) still range over the board only.
+    // ═════════════════════════════════════════════════════════════════════
+    /** Flat cell index of (x, y). */
+    public int idx(int x, int y) { return (y + 1) * stride + x + 1; }
+
+    /** X coordinate of cell index i. */
+    public int xOf(int i) { return i % stride - 1; }
+
+    /** Y coordinate of cell index i. */
+    public int yOf(int i) { return i / stride - 1; }
+
+    /** Size of the cell index space (board plus sentinel border); bounds every index. */
+    public int cells() { return stride * (h + 2); }
+
+    /** Sets the WALL flag on the border cells of a store sized for this game. */
+    private void markWalls(CellStore s) {
+        int last = (h + 1) * stride;
+        for (int x = 0; x < stride; x++) {
+            s.setFlag(x, CellStore.WALL, true);
+            s.setFlag(last + x, CellStore.WALL, true);
+        }
+        for (int r = stride; r < last; r += stride) {
+            s.setFlag(r, CellStore.WALL, true);
+            s.setFlag(r + stride - 1, CellStore.WALL, true);
+        }
+    }
+
+    /**
+     * True for boards above the classic size. The UI then batches solver
+     * steps; which algorithms also fall back to replaying the solution path
+     * is up to ComputerSolver.replayAbove.
+     */
+    public boolean isLarge() { return w * h > CLASSIC_MAX_CELLS; }
+
+    public TType type(int i)         { return board.type(i); }
+    public TType type(int x, int y)  { return board.type(idx(x, y)); }
+    public TType solType(int i)      { return sol.type(i); }
+    public TType solType(int x, int y) { return sol.type(idx(x, y)); }
+    public boolean isClue(int i)     { return board.isClue(i); }
+    public boolean isStart(int i)    { return board.isStart(i); }
+    public boolean isEnd(int i)      { return board.isEnd(i); }
+
+    /** Index of the neighbour of cell i in Dir ordinal d, or -1 if off the board. */
+    public int step(int i, int d) {
+        int n = i + off[d];
+        return board.isWall(n) ? -1 : n;
+    }
+
+    /** Index of the neighbour that cell i is linked to in Dir ordinal d (both pieces connect), or -1. */
+    public int link(int i, int d) {
+        if (!Util.connects(board.typeOrd(i), d)) return -1;
+        int n = i + off[d];   // In range: only board cells hold pieces
+        return Util.connects(board.typeOrd(n), Util.OPP[d]) ? n : -1;
+    }
+
     // ═════════════════════════════════════════════════════════════════════
     //  PUZZLE GENERATION
     // ═════════════════════════════════════════════════════════════════════
@@ -62,67 +169,367 @@ public class Game {
         sy = rnd.nextInt(h); sx = 0;
         ex = rnd.nextInt(w); ey = h - 1;
 
-        boolean[][] vis = new boolean[h][w];
-        List<int[]> path = new ArrayList<>();
+        int k = bandCount();
+        int[] path = pathStrategy == PathStrategy.BACKBITE ? backbitePath() : null;
+        if (path == null && !genCancelled) path = k > 2 ? bandedPath(k) : halvesPath();   // DFS, or backbite gave up
+        if (path == null || genCancelled) return false;
+        int last = path[path.length - 1];
+        ex = xOf(last); ey = yOf(last);
+
+        // Convert path to track types
+        for (int i = 0; i < path.length; i++) {
+            int c = path[i];
+            int m = i == 0 ? 1 << Dir.L.ordinal() : towards(c, path[i-1]);
+            m |= i == path.length-1 ? 1 << Dir.D.ordinal() : towards(c, path[i+1]);
+            sol.set(c, Util.TYPE_OF_MASK[m]);
+        }
+
+        // Initialize board cells with clues
+        board.clear();
+        int si = idx(sx, sy), ei = idx(ex, ey);
+        board.set(si, sol.typeOrd(si) | CellStore.CLUE | CellStore.START);
+        board.set(ei, sol.typeOrd(ei) | CellStore.CLUE | CellStore.END);
+
+        // Reveal random clues based on difficulty (solution cells in index order; empty runs are skipped)
+        for (int i = sol.nextNonEmpty(0); i >= 0; i = sol.nextNonEmpty(i + 1))
+            if (i != si && i != ei && rnd.nextInt(100) < diffPercent)
+                board.set(i, sol.typeOrd(i) | CellStore.CLUE);
+
+        computeClues();
+        rebuildGraph();
+        pristine = board.snapshot();
+        return true;
+    }
+
+    /**
+     * Start-to-bottom path of the classic split: a walk over the top half
+     * from the start, stitched to a walk over the bottom half entered at
+     * the first free column near the exit (dx order 0, 1, -1, 2, -2). Starts
+     * in the bottom half walk the whole board. Returns null on failure.
+     */
+    private int[] halvesPath() {
+        Walk wk = new Walk(this, w * h);
         int[] tries = new int[]{0};
 
         int mid = (h - 1) / 2;
 
         // Generate path in top half first
         if (sy <= mid) {
-            boolean ok = walkRec(sx, sy, vis, path, tries, 20000, 0, w-1, 0, mid);
-            if (!ok || path.get(path.size()-1)[1] != mid) return false;
+            boolean ok = walkPath(idx(sx, sy), wk, tries, walkBudget(), 0, mid, rnd);
+            if (!ok || yOf(wk.last()) != mid) return null;
 
             // Connect to bottom half
-            int hx = path.get(path.size()-1)[0];
+            int hx = xOf(wk.last());
             boolean found = false;
             for (int dx : new int[]{0, 1, -1, 2, -2}) {
                 int nx = hx + dx, ny = mid + 1;
-                if (nx < 0 || nx >= w || vis[ny][nx]) continue;
-                if (walkRec(nx, ny, vis, path, tries, 20000, 0, w-1, mid+1, h-1)) { found=true; break; }
+                if (nx < 0 || nx >= w || wk.visited(idx(nx, ny))) continue;
+                if (walkPath(idx(nx, ny), wk, tries, walkBudget(), mid+1, h-1, rnd)) { found=true; break; }
             }
-            if (!found) return false;
+            if (!found) return null;
         } else {
-            if (!walkRec(sx, sy, vis, path, tries, 20000, 0, w-1, 0, h-1)) return false;
+            if (!walkPath(idx(sx, sy), wk, tries, walkBudget(), 0, h-1, rnd)) return null;
         }
 
         // Extend to bottom row
-        int[] last = path.get(path.size()-1);
-        int lx = last[0], ly = last[1];
-        while (ly < h-1 && !vis[ly+1][lx]) { ly++; path.add(new int[]{lx, ly}); vis[ly][lx]=true; }
-        if (ly != h-1) return false;
-        ex = lx; ey = ly;
+        int last = wk.last();
+        while (yOf(last) < h-1 && !wk.visited(last + stride)) { last += stride; wk.push(last, 0); }
+        if (yOf(last) != h-1) return null;
+        return Arrays.copyOf(wk.path, wk.len);
+    }
 
-        // Convert path to track types
-        for (int i = 0; i < path.size(); i++) {
-            int x = path.get(i)[0], y = path.get(i)[1];
-            Set<Dir> s = new HashSet<>();
-            if (i == 0) { s.add(Dir.L); }
-            else { int px=path.get(i-1)[0], py=path.get(i-1)[1];
-                if (px==x-1) s.add(Dir.L); if (px==x+1) s.add(Dir.R);
-                if (py==y-1) s.add(Dir.U); if (py==y+1) s.add(Dir.D); }
-            if (i == path.size()-1) { s.add(Dir.D); }
-            else { int nx=path.get(i+1)[0], ny=path.get(i+1)[1];
-                if (nx==x-1) s.add(Dir.L); if (nx==x+1) s.add(Dir.R);
-                if (ny==y-1) s.add(Dir.U); if (ny==y+1) s.add(Dir.D); }
-            sol[y][x] = Util.typeFromDirs(s);
+    // ─────────────────────────────────────────────────────────────────────
+    //  Band-parallel generation (tall boards)
+    // ─────────────────────────────────────────────────────────────────────
+    /** Horizontal bands used by genPathAndSolution: 0 = automatic, 1 or 2 = the classic halves */
+    public int bands = 0;
+    /** Rows per band when bands is automatic; boards under three bands tall keep the halves */
+    static final int BAND_ROWS = 64;
+    /** Walks tried per band, each from a fresh seed, before the attempt fails */
+    static final int BAND_RETRIES = 64;
+    /** Try budget of one band walk: a walk that has not ended by then rarely does, so a fresh seed is cheaper */
+    static final int BAND_TRIES = 20000;
+
+    /** Number of bands for this board: the bands setting, or one per BAND_ROWS rows. */
+    private int bandCount() {
+        int k = bands > 0 ? bands : h / BAND_ROWS;
+        return Math.max(1, Math.min(k, h / 3));   // A band needs a bridge row plus walk rows
+    }
+
+    /**
+     * Start-to-bottom path built from k horizontal bands walked in parallel.
+     * The first segment covers the rows from the top down to the end of the
+     * start's band; every later band reserves its top row as a bridge and
+     * walks the rows below it from a random entry column. Each segment is
+     * the same backtracking walk as a half (see walkPath), so a band winds
+     * as much as a single region of its size; a band whose walk fails is
+     * walked again with a fresh seed, up to BAND_RETRIES times, leaving the
+     * other bands alone. Bands are independent, so each runs on its own
+     * thread with its own generator, seeded in order from this game's. The
+     * bridge then joins each band's exit column to the next band's entry
+     * along the reserved row. Returns null if a band keeps failing or the
+     * attempt is cancelled.
+     */
+    private int[] bandedPath(int k) {
+        int[] top = new int[k + 1];
+        for (int b = 0; b <= k; b++) top[b] = b * h / k;   // Band b is rows top[b] .. top[b+1]-1
+        int first = 0;
+        while (top[first + 1] <= sy) first++;
+        int segs = k - first;
+
+        int[] y0 = new int[segs], y1 = new int[segs], start = new int[segs];
+        long[] seeds = new long[segs];
+        for (int j = 0; j < segs; j++) {
+            int b = first + j;
+            y0[j] = j == 0 ? 0 : top[b] + 1;
+            y1[j] = top[b + 1] - 1;
+            start[j] = j == 0 ? idx(sx, sy) : -1;
+            seeds[j] = rnd.nextLong();
         }
 
-        // Initialize board cells with clues
-        for (int y = 0; y < h; y++)
-            for (int x = 0; x < w; x++) { board[y][x] = new Cell(); }
-        board[sy][sx].t = sol[sy][sx]; board[sy][sx].clue = true; board[sy][sx].start = true;
-        board[ey][ex].t = sol[ey][ex]; board[ey][ex].clue = true; board[ey][ex].end   = true;
+        int[][] parts = new int[segs][];
+        java.util.stream.IntStream.range(0, segs).parallel()
+                .forEach(j -> parts[j] = walkBand(start[j], y0[j], y1[j], new Random(seeds[j])));
 
-        // Reveal random clues based on difficulty
-        for (int y = 0; y < h; y++)
-            for (int x = 0; x < w; x++)
-                if (sol[y][x] != TType.EMPTY && !(x==sx&&y==sy) && !(x==ex&&y==ey))
-                    if (rnd.nextInt(100) < diffPercent) { board[y][x].t = sol[y][x]; board[y][x].clue = true; }
+        int len = 0;
+        for (int j = 0; j < segs; j++) {
+            if (parts[j] == null) return null;
+            len += parts[j].length;
+            if (j > 0) len += Math.abs(xOf(parts[j - 1][parts[j - 1].length - 1]) - xOf(parts[j][0])) + 1;
+        }
+        int[] path = new int[len];
+        int p = 0;
+        for (int j = 0; j < segs; j++) {
+            if (j > 0) {
+                // Bridge: down from the previous exit into the reserved row, then along it to above the entry
+                int x = xOf(path[p - 1]), xe = xOf(parts[j][0]), bridgeRow = y0[j] - 1;
+                int dx = Integer.signum(xe - x);
+                for (path[p++] = idx(x, bridgeRow); x != xe; ) path[p++] = idx(x += dx, bridgeRow);
+            }
+            System.arraycopy(parts[j], 0, path, p, parts[j].length);
+            p += parts[j].length;
+        }
+        return path;
+    }
 
-        computeClues();
-        rebuildGraph();
-        return true;
+    /**
+     * Walk over rows y0..y1 from cell start (-1: a random column of row y0,
+     * drawn again for every walk), ending on row y1; returns its cells, or
+     * null once BAND_RETRIES walks have failed. A failed walk leaves wk
+     * empty, so each retry simply continues r's stream.
+     */
+    private int[] walkBand(int start, int y0, int y1, Random r) {
+        Walk wk = new Walk(this, w * (y1 - y0 + 1));
+        for (int a = 0; a < BAND_RETRIES && !genCancelled; a++) {
+            int[] tries = new int[]{0};
+            if (walkPath(start >= 0 ? start : idx(r.nextInt(w), y0), wk, tries, BAND_TRIES, y0, y1, r))
+                return Arrays.copyOf(wk.path, wk.len);
+        }
+        return null;
+    }
+
+    // ─────────────────────────────────────────────────────────────────────
+    /** Path generators of genPathAndSolution. */
+    public enum PathStrategy {
+        /** Backtracking depth-first walk (halves, or bands on tall boards) */
+        DFS,
+        /** Backbite moves on a growing path; never backtracks (see backbitePath), falls back to DFS if it runs out of moves */
+        BACKBITE
+    }
+
+    /** Strategy new games start with; set with -Dpaths=BACKBITE */
+    public static PathStrategy defaultPathStrategy =
+            PathStrategy.valueOf(System.getProperty("paths", "DFS").toUpperCase());
+
+    /** Backbite: fraction of the board the path aims to cover (0..1), block by block */
+    public double pathFill = 0.5;
+    /** Backbite: chance that a growing tail goes straight on when it can; higher means fewer turns */
+    public double pathStraight = 0.5;
+
+    /** Backbite: side of the blocks the board is worked through */
+    static final int BITE_BLOCK = 128;
+
+    /**
+     * Start-to-bottom path grown by backbite moves. The path starts as the
+     * start cell alone and the start stays its head; every move looks at
+     * one neighbour v of the tail:
+     *  - v free: the path grows by v;
+     *  - v on the path at index j: the suffix after j is reversed, so the
+     *    tail moves to path[j+1] (the "backbite"; the cells stay the same).
+     *
+     * The board is cut into blocks of about BITE_BLOCK × BITE_BLOCK cells and
+     * the tail works through them one at a time (see backbiteRegion), so a
+     * bite never reverses more than the current block's cells. No move is
+     * ever undone: there is no backtracking and no restart, and the work
+     * grows linearly with the number of blocks. backbiteRoute gives their
+     * order. Returns null if cancelled or out of moves.
+     */
+    private int[] backbitePath() {
+        int[] path = new int[w * h + 1], pos = new int[cells()];
+        Arrays.fill(pos, -1);                      // Index on the path, -1 free
+        path[0] = idx(sx, sy); pos[path[0]] = 0;
+        int n = 1;
+        for (int[] r : backbiteRoute()) {
+            n = backbiteRegion(path, n, pos, r[0], r[1], r[2], r[3], r[4]);
+            if (n < 0) return null;
+        }
+        return Arrays.copyOf(path, n - 1);         // Drop the step out past the bottom row
+    }
+
+    /**
+     * Blocks for backbitePath in visiting order, as {x0, y0, x1, y1, exit
+     * Dir}; each block touches the next across its exit side. With the
+     * start below the top block row, the route first climbs the left block
+     * column to the top and snakes back down over the other columns; below
+     * the start's block row it snakes over full rows, ending on the bottom
+     * row. Entering a row next to (not at) its end skips that end block.
+     * Boards too narrow for two block columns cover the rows above the
+     * start in its block.
+     */
+    private List<int[]> backbiteRoute() {
+        int by = Math.max(1, h / BITE_BLOCK), bx = Math.max(1, w / BITE_BLOCK);
+        int[] top = new int[by + 1];
+        for (int b = 0; b <= by; b++) top[b] = b * h / by;      // Block row b is rows top[b] .. top[b+1]-1
+        int b0 = 0;
+        while (top[b0 + 1] <= sy) b0++;
+        if (b0 > 0 && w >= 4) bx = Math.max(2, bx);              // Room for the climb and the way back
+        int[] left = new int[bx + 1];
+        for (int c = 0; c <= bx; c++) left[c] = c * w / bx;
+
+        List<int[]> route = new ArrayList<>();
+        int U = Dir.U.ordinal(), D = Dir.D.ordinal(), R = Dir.R.ordinal();
+        int c = 0, b = b0;
+        if (b0 > 0 && bx > 1) {
+            for (int k = b0; k > 0; k--) route.add(new int[]{0, top[k], left[1] - 1, top[k + 1] - 1, U});
+            route.add(new int[]{0, 0, left[1] - 1, top[1] - 1, R});
+            c = 1;
+            for (int k = 0; k <= b0; k++) c = backbiteSweep(route, top[k], top[k + 1] - 1, left, c, 1, bx - 1);
+            b = b0 + 1;
+        } else if (b0 > 0) {
+            route.add(new int[]{0, 0, w - 1, top[b0 + 1] - 1, D});
+            b = b0 + 1;
+        }
+        for (; b < by; b++) c = backbiteSweep(route, top[b], top[b + 1] - 1, left, c, 0, bx - 1);
+        return route;
+    }
+
+    /**
+     * Adds the blocks of rows y0..y1 and block columns lo..hi, entered from
+     * above (or at the start) in column c, sweeping away from c and leaving
+     * downwards from the last one. Returns the column it leaves in.
+     */
+    private int backbiteSweep(List<int[]> route, int y0, int y1, int[] left, int c, int lo, int hi) {
+        int step = c == hi && c != lo ? -1 : 1, end = step > 0 ? hi : lo;
+        int side = step > 0 ? Dir.R.ordinal() : Dir.L.ordinal();
+        for (int k = c; ; k += step) {
+            route.add(new int[]{left[k], y0, left[k + 1] - 1, y1, k == end ? Dir.D.ordinal() : side});
+            if (k == end) return k;
+        }
+    }
+
+    /**
+     * Runs backbite moves with the tail (path[n-1], which must lie in the
+     * region) kept in columns x0..x1, rows y0..y1, until the region is
+     * pathFill full and the tail is on its edge facing exit. The tail then
+     * steps across that edge into the next region (for the last region,
+     * into the bottom wall; the caller drops that cell). Returns the new path
+     * length, or -1 if cancelled or out of moves.
+     *
+     * While the region is short of pathFill the tail prefers free
+     * neighbours, going straight with chance pathStraight, and only bites
+     * when boxed in; after that it leans towards the exit edge. A tail
+     * boxed in for long settles for the fill the region has; one still
+     * boxed in much later is caught in a pocket it cannot bite its way out
+     * of (as in strips one to three cells thin), so the region is cleared
+     * back to its entry and grown again. Thin regions also get a move
+     * budget scaled by their aspect ratio, as the tail needs longer to
+     * travel their length.
+     */
+    private int backbiteRegion(int[] path, int n, int[] pos, int x0, int y0, int x1, int y1, int exit) {
+        int entry = n - 1, rw = x1 - x0 + 1, rh = y1 - y0 + 1, size = rw * rh;
+        int fill = Math.max(2, Math.min(size, (int) (pathFill * size)));   // Start and end never coincide
+        int target = fill;
+        long moves = (64L * size + 4096) * Math.max(rw, rh) / Math.min(rw, rh);
+        int stall = 0, maxStall = 8 * (rw + rh);
+        for (long m = 0; ; m++) {
+            if (stall > 4 * maxStall) {                // Trapped: clear the region back to its entry
+                while (n - 1 > entry) pos[path[--n]] = -1;
+                target = fill; stall = 0;
+            }
+            int t = path[n - 1], tx = xOf(t), ty = yOf(t);
+            boolean atExit = exit == Dir.U.ordinal() ? ty == y0 : exit == Dir.D.ordinal() ? ty == y1
+                           : exit == Dir.L.ordinal() ? tx == x0 : tx == x1;
+            if (stall > maxStall) target = n - entry;   // Boxed in for long: settle for this fill
+            if (n - entry >= target && atExit) {
+                int v = t + off[exit];
+                pos[v] = n; path[n++] = v;
+                return n;
+            }
+            if (m > moves || ((m & 0xFFF) == 0 && genCancelled)) return -1;
+
+            int free = 0, open = 0;                  // Neighbours in the region, and the free ones among them
+            for (int d = 0; d < 4; d++) {
+                int x = tx + Util.DX[d], y = ty + Util.DY[d];
+                if (x < x0 || x > x1 || y < y0 || y > y1) continue;
+                open |= 1 << d;
+                if (pos[t + off[d]] == -1) free |= 1 << d;
+            }
+            int d;
+            if (n - entry < target) {
+                int straight = n > 1 ? towardsDir(path[n - 2], t) : -1;
+                d = straight >= 0 && (free & 1 << straight) != 0 && rnd.nextDouble() < pathStraight ? straight
+                  : free != 0 ? randomBit(free) : randomBit(open);
+            } else {
+                d = (open & 1 << exit) != 0 && rnd.nextBoolean() ? exit : randomBit(open);
+            }
+
+            int v = t + off[d], j = pos[v];
+            if (j == -1) {
+                pos[v] = n; path[n++] = v;
+                stall = 0;
+                continue;
+            }
+            stall++;                                 // A bite, or a step back onto the previous cell
+            if (j < n - 2) {
+                for (int a = j + 1, b = n - 1; a < b; a++, b--) {
+                    int c = path[a]; path[a] = path[b]; path[b] = c;
+                    pos[path[a]] = a; pos[path[b]] = b;
+                }
+            }
+        }
+    }
+
+    /** Dir ordinal of the step from cell a to its neighbour b. */
+    private int towardsDir(int a, int b) {
+        int d = 0;
+        while (d < 3 && b - a != off[d]) d++;
+        return d;
+    }
+
+    /** Index of a uniformly chosen set bit of a nonzero 4-bit mask. */
+    private int randomBit(int mask) {
+        int k = rnd.nextInt(Integer.bitCount(mask));
+        for (int d = 0; ; d++) if ((mask & 1 << d) != 0 && k-- == 0) return d;
+    }
+
+    /** Reseeds the generator, so the next genPathAndSolution is reproducible. */
+    public void setSeed(long seed) { rnd = new Random(seed); }
+
+    /**
+     * Asks a genPathAndSolution running on another thread to give up; it
+     * returns false within a few thousand walk steps. The request stays set,
+     * so later generation on this game fails too.
+     */
+    public void cancelGeneration() { genCancelled = true; }
+
+    /** True once cancelGeneration was called. */
+    public boolean generationCancelled() { return genCancelled; }
+
+    /** Mask bit of the direction leading from cell c to the adjacent cell p. */
+    private int towards(int c, int p) {
+        for (int d = 0; d < 4; d++)
+            if (p == c + off[d]) return 1 << d;
+        return 0;
     }
 
     /** Computes row and column clue counts from the solution. */
@@ -130,135 +537,546 @@ public class Game {
         rowClues = new int[h]; colClues = new int[w];
         for (int y = 0; y < h; y++)
             for (int x = 0; x < w; x++)
-                if (sol[y][x] != TType.EMPTY) { rowClues[y]++; colClues[x]++; }
+                if (sol.typeOrd(idx(x, y)) != 0) { rowClues[y]++; colClues[x]++; }
     }
 
     /**
-     * Recursive path walking with bounds and randomness.
-     * Used for puzzle generation.
+     * State of one generation walk, in flat arrays sized once per attempt.
+     * The path doubles as the walk stack: path[k] is the cell of frame k and
+     * order[k] its shuffled directions (four 2-bit Dir ordinals) with the
+     * next one to try in bits 8..10. Visited cells are a bitset over the
+     * index space with the sentinel border pre-marked, so a wall is just
+     * another visited cell.
      */
-    private boolean walkRec(int x, int y, boolean[][] vis, List<int[]> path,
-                            int[] tries, int max, int x0, int x1, int y0, int y1) {
+    private static final class Walk {
+        final long[] vis;
+        final int[] path, order;
+        int len = 0;
+
+        Walk(Game g, int capacity) {
+            vis = new long[(g.cells() + 63) >>> 6];
+            path = new int[capacity];
+            order = new int[capacity];
+            int last = (g.h + 1) * g.stride;
+            for (int x = 0; x < g.stride; x++) { mark(x); mark(last + x); }
+            for (int r = g.stride; r < last; r += g.stride) { mark(r); mark(r + g.stride - 1); }
+        }
+
+        private void mark(int c) { vis[c >>> 6] |= 1L << c; }
+
+        boolean visited(int c) { return (vis[c >>> 6] & 1L << c) != 0; }
+        int last() { return path[len - 1]; }
+
+        void push(int c, int ord) {
+            vis[c >>> 6] |= 1L << c;
+            path[len] = c; order[len] = ord;
+            len++;
+        }
+
+        void pop() {
+            int c = path[--len];
+            vis[c >>> 6] &= ~(1L << c);
+        }
+    }
+
+    /** Direction order [R, L, D, U] as packed 2-bit Dir ordinals (the list the walk used to shuffle). */
+    private static final int DIRS_RLDU = 3 | 2 << 2 | 1 << 4 | 0 << 6;
+
+    /**
+     * Shuffles the four directions exactly as Collections.shuffle does for a
+     * four-element list (swap i-1 with nextInt(i) for i = 4, 3, 2), so the
+     * random stream is consumed the same way.
+     */
+    private static int shuffledDirs(Random rnd) {
+        int p = DIRS_RLDU;
+        for (int i = 4; i > 1; i--) {
+            int j = rnd.nextInt(i), a = (p >>> 2 * (i - 1)) & 3, b = (p >>> 2 * j) & 3;
+            p &= ~(3 << 2 * (i - 1) | 3 << 2 * j);
+            p |= b << 2 * (i - 1) | a << 2 * j;
+        }
+        return p;
+    }
+
+    /**
+     * Random depth-first path walk from cell start, confined to rows y0..y1,
+     * on the explicit stack in wk. Succeeds once a cell of row y1 has run
+     * out of directions; on failure the path and visited marks are back to
+     * how they were. Visits cells, and spends the try budget, exactly as a
+     * recursive walk that shuffles the four directions at every cell, and
+     * creates no objects per cell. Used for puzzle generation.
+     */
+    private boolean walkPath(int start, Walk wk, int[] tries, int max, int y0, int y1, Random rnd) {
         if (tries[0]++ > max) return false;
-        vis[y][x] = true; path.add(new int[]{x, y});
-        List<int[]> dirs = new ArrayList<>(Arrays.asList(new int[]{1,0}, new int[]{-1,0},
-                                                          new int[]{0,1}, new int[]{0,-1}));
-        Collections.shuffle(dirs, rnd);
-        for (int[] d : dirs) {
-            int nx=x+d[0], ny=y+d[1];
-            if (nx<x0||nx>x1||ny<y0||ny>y1) continue;
-            if (!vis[ny][nx] && walkRec(nx, ny, vis, path, tries, max, x0, x1, y0, y1)) return true;
+        int lo = idx(0, y0), hi = idx(w - 1, y1), lastRow = idx(0, y1), base = wk.len;
+        wk.push(start, shuffledDirs(rnd));
+        while (wk.len > base) {
+            int top = wk.len - 1, ord = wk.order[top], k = ord >>> 8;
+            int c = wk.path[top];
+            if (k < 4) {
+                wk.order[top] = ord + (1 << 8);
+                int n = c + off[(ord >>> 2 * k) & 3];
+                if (n < lo || n > hi || wk.visited(n)) continue;
+                if (tries[0]++ > max) continue;
+                if ((tries[0] & 0xFFF) == 0 && genCancelled) tries[0] = max + 1;   // Spend the budget: unwind now
+                wk.push(n, shuffledDirs(rnd));
+                continue;
+            }
+            if (c >= lastRow) return true;
+            wk.pop();
         }
-        if (y == y1) return true;
-        path.remove(path.size()-1); vis[y][x]=false; return false;
+        return false;
     }
 
+    /** Try budget of one generation attempt; grows with the board so large boards can finish. */
+    private int walkBudget() { return Math.max(20000, 8 * w * h); }
+
     // ═════════════════════════════════════════════════════════════════════
     //  GRAPH HELPERS
+    //  The track graph is implicit: neighbours are derived on the fly from
+    //  the packed cell types (see link). The GNode view is only built when
+    //  graphView() is called, and is then kept current like the rest.
     // ═════════════════════════════════════════════════════════════════════
-    /** Rebuilds the connectivity graph from current board state. */
+    /**
+     * Rebuilds the connectivity index, the occupancy and mismatch counters
+     * (and the GNode view, if materialised) from current board state. Only
+     * needed after bulk edits; single-cell edits go through setCell.
+     */
     public void rebuildGraph() {
+        version++; solVersion++;
+        hash = Zobrist.of(board);
+        conn.rebuild();
+        occ.rebuild();
+        mismatch.rebuild();
+        if (graph != null) fillGraphView();
+    }
+
+    /** Returns the GNode compatibility view of the graph, building it on first use. */
+    public GNode[][] graphView() {
+        if (graph == null) {
+            graph = new GNode[h][w];
+            for (int y = 0; y < h; y++)
+                for (int x = 0; x < w; x++)
+                    graph[y][x] = new GNode(x, y);
+            fillGraphView();
+        }
+        return graph;
+    }
+
+    /** Releases the GNode view; traversals never need it. */
+    public void dropGraphView() { graph = null; }
+
+    private void fillGraphView() {
         for (int y=0;y<h;y++) for (int x=0;x<w;x++) graph[y][x].nbrs.clear();
         for (int y=0;y<h;y++) for (int x=0;x<w;x++) {
-            Set<Dir> ds = Util.dirsOf(board[y][x].t);
-            for (Dir d : ds) {
-                int nx=x+(d==Dir.R?1:d==Dir.L?-1:0);
-                int ny=y+(d==Dir.D?1:d==Dir.U?-1:0);
-                if (nx<0||nx>=w||ny<0||ny>=h) continue;
-                if (Util.dirsOf(board[ny][nx].t).contains(Util.opposite(d)))
-                    graph[y][x].nbrs.add(graph[ny][nx]);
+            int i = idx(x, y);
+            for (int d=0; d<4; d++) {
+                int n = link(i, d);
+                if (n >= 0) graph[y][x].nbrs.add(graph[yOf(n)][xOf(n)]);
             }
         }
     }
 
-    /** Finds path from start to end using BFS. Returns list of coordinates or null. */
-    public List<int[]> findPathFromCurrent() {
-        rebuildGraph();
-        boolean[][] vis = new boolean[h][w];
-        Map<String,String> prev = new HashMap<>();
-        Deque<GNode> q = new ArrayDeque<>();
-        q.add(graph[sy][sx]); vis[sy][sx]=true; prev.put(sx+","+sy, null);
-        while (!q.isEmpty()) {
-            GNode cur = q.poll();
-            if (cur.x==ex && cur.y==ey) {
-                List<int[]> res = new ArrayList<>();
-                String k = cur.x+","+cur.y;
-                while (k!=null) { String[] p=k.split(","); res.add(0, new int[]{Integer.parseInt(p[0]),Integer.parseInt(p[1])}); k=prev.get(k); }
-                return res;
-            }
-            for (GNode n : cur.nbrs) if (!vis[n.y][n.x]) { vis[n.y][n.x]=true; prev.put(n.x+","+n.y, cur.x+","+cur.y); q.add(n); }
+    /**
+     * Re-links the graph around (x, y) after that cell changed: the cell's own
+     * neighbour list and the back-links of its four neighbours. O(1).
+     */
+    private void relinkCell(int x, int y) {
+        if (graph == null) return;
+        GNode c = graph[y][x];
+        for (GNode n : c.nbrs) n.nbrs.remove(c);
+        c.nbrs.clear();
+        int i = idx(x, y);
+        for (int d=0; d<4; d++) {
+            int n = link(i, d);
+            if (n < 0) continue;
+            GNode o = graph[yOf(n)][xOf(n)];
+            c.nbrs.add(o);
+            o.nbrs.add(c);
         }
-        return null;
     }
 
-    /** Checks if a valid path exists from start to end. */
+    /**
+     * Finds the path from start to end over laid track (GridSearch, using
+     * searchMode). Returns the cell indices in order, or null if not
+     * connected. The result is cached until the board changes; callers must
+     * not modify it.
+     */
+    public int[] findPath() {
+        if (pathMemo.fresh(version)) return pathMemo.value();
+        return pathMemo.put(version, GridSearch.get().path(this, idx(sx, sy), idx(ex, ey), searchMode));
+    }
+
+    /** Finds the path from start to end as findPath does (using searchMode). Returns list of coordinates or null. */
+    public List<int[]> findPathFromCurrent() {
+        int[] p = findPath();
+        if (p == null) return null;
+        List<int[]> res = new ArrayList<>(p.length);
+        for (int i : p) res.add(new int[]{xOf(i), yOf(i)});
+        return res;
+    }
+
+    /** Checks if a valid path exists from start to end (search over the implicit graph, using searchMode). */
     public boolean graphPathExists() {
-        rebuildGraph();
-        boolean[][] vis = new boolean[h][w];
-        Deque<GNode> q = new ArrayDeque<>();
-        q.add(graph[sy][sx]); vis[sy][sx]=true;
-        while (!q.isEmpty()) {
-            GNode cur = q.poll();
-            if (cur.x==ex && cur.y==ey) return true;
-            for (GNode n : cur.nbrs) if (!vis[n.y][n.x]) { vis[n.y][n.x]=true; q.add(n); }
+        return GridSearch.get().connected(this, idx(sx, sy), idx(ex, ey), searchMode);
+    }
+
+    /** Returns true if puzzle is solved (start and end in one component). O(α(N)). */
+    public boolean checkSolved() {
+        if (solvedMemo.fresh(version)) return solvedMemo.value();
+        return solvedMemo.put(version, conn.connected(idx(sx, sy), idx(ex, ey)));
+    }
+
+    /** True if every cell holds its solution piece. O(1). */
+    public boolean matchesSolution() { return mismatch.count() == 0; }
+
+    /**
+     * Walks the solution from start to end and returns its cells in order.
+     * Cached until the next bulk rebuild; callers must not modify it.
+     */
+    public int[] solutionPath() {
+        if (solPathMemo.fresh(solVersion)) return solPathMemo.value();
+        int[] buf = new int[w * h];
+        int len = 0, prev = -1, cur = idx(sx, sy), e = idx(ex, ey);
+        while (cur >= 0) {
+            buf[len++] = cur;
+            if (cur == e) break;
+            int m = Util.MASK[sol.typeOrd(cur)], next = -1;
+            for (int d = 0; d < 4 && next < 0; d++) {
+                if ((m & (1 << d)) == 0) continue;
+                int n = cur + off[d];   // Walls are EMPTY in sol, so the border needs no test
+                if (n != prev && sol.typeOrd(n) != 0) next = n;
+            }
+            prev = cur; cur = next;
         }
-        return false;
+        return solPathMemo.put(solVersion, Arrays.copyOf(buf, len));
     }
 
-    /** Returns true if puzzle is solved. */
-    public boolean checkSolved() { return graphPathExists(); }
+    /** Hit/miss summary of the derived-data caches. */
+    public String cacheStats() {
+        return "solved " + solvedMemo + ", path " + pathMemo + ", dist " + distMemo + ", solPath " + solPathMemo;
+    }
 
     // ═════════════════════════════════════════════════════════════════════
     //  PLAYER ACTIONS
     // ═════════════════════════════════════════════════════════════════════
-    /** Undoes the last move. */
+    /**
+     * Changes the track type of one cell and patches the connectivity graph
+     * for that cell and its four neighbours. Does not record history.
+     */
+    public void setCell(int x, int y, TType t) {
+        int i = idx(x, y), old = board.typeOrd(i);
+        board.setType(i, t);
+        typeChanged(i, old);
+    }
+
+    /** Updates every derived structure after cell i changed from piece oldOrd. */
+    private void typeChanged(int i, int oldOrd) {
+        version++;
+        patchCell(i, oldOrd);
+    }
+
+    /** typeChanged without the version bump, for edits made as part of a batch. */
+    private void patchCell(int i, int oldOrd) {
+        hash ^= Zobrist.cell(i, oldOrd) ^ Zobrist.cell(i, board.typeOrd(i));
+        relinkCell(xOf(i), yOf(i));
+        conn.cellChanged(i, oldOrd);
+        occ.cellChanged(i, oldOrd);
+        mismatch.cellChanged(i);
+    }
+
+    /** Places a piece as a move: records it for undo, clears the clue flag and sets the cell. */
+    public void playMove(int x, int y, TType t) {
+        int i = idx(x, y);
+        journal.record(MoveJournal.encode(i, board.typeOrd(i), t.ordinal(), board.isClue(i)));
+        board.setFlag(i, CellStore.CLUE, false);
+        setCell(x, y, t);
+    }
+
+    /** Packs a move for applyMoves: cell index in the high bits, TType ordinal in the low 3. */
+    public static int packMove(int cell, TType t) { return cell << 3 | t.ordinal(); }
+
+    /** Plays a batch of packed moves (see applyMoves(int[], int, int)). */
+    public void applyMoves(int[] packedMoves) { applyMoves(packedMoves, 0, packedMoves.length); }
+
+    /**
+     * Plays packedMoves[from..to) as one move: the batch is journalled as a
+     * single block (undo and redo take it whole) and the version advances
+     * once, so memoised results are recomputed at most once per batch.
+     * Small batches patch the derived structures cell by cell; a batch
+     * covering more than an eighth of the board writes the cells and
+     * rebuilds them in one pass.
+     */
+    public void applyMoves(int[] packedMoves, int from, int to) {
+        if (from >= to) return;
+        boolean bulk = (long) (to - from) * 8 > (long) w * h;
+        for (int k = from; k < to; k++) {
+            int i = packedMoves[k] >>> 3, t = packedMoves[k] & 7, old = board.typeOrd(i);
+            journal.record(MoveJournal.encode(i, old, t, board.isClue(i)) | (k > from ? MoveJournal.BATCH : 0));
+            board.setFlag(i, CellStore.CLUE, false);
+            if (old == t) continue;
+            board.setType(i, Util.TYPES[t]);
+            if (!bulk) patchCell(i, old);
+        }
+        if (bulk) rebuildGraph();
+        else version++;
+    }
+
+    /** Undoes the last move (a whole batch if it came from applyMoves). */
     public void undo() {
-        if (revealedSolution || hist.isEmpty()) return;
-        Move m = hist.pop();
-        board[m.y][m.x].t = m.prev; board[m.y][m.x].clue = m.prevClue;
-        rebuildGraph();
+        if (revealedSolution || !journal.canUndo()) return;
+        long e;
+        do {
+            e = journal.undo();
+            undoEntry(e);
+        } while (MoveJournal.inBatch(e) && journal.canUndo());
+    }
+
+    /**
+     * Re-applies the last undone move (a whole batch if it came from
+     * applyMoves). Returns false if there was nothing to redo, or the
+     * solution is revealed.
+     */
+    public boolean redo() {
+        if (revealedSolution || !journal.canRedo()) return false;
+        do {
+            redoEntry(journal.redo());
+        } while (journal.canRedo() && MoveJournal.inBatch(journal.peekRedo()));
+        return true;
+    }
+
+    /**
+     * Undoes or redoes moves until the journal position equals pos (see
+     * MoveJournal.position). Positions older than the journal cap are clamped.
+     */
+    public void rewindTo(long pos) {
+        if (revealedSolution) return;
+        pos = Math.max(pos, journal.oldestPosition());
+        while (journal.position() > pos) undoEntry(journal.undo());
+        while (journal.position() < pos && journal.canRedo()) redoEntry(journal.redo());
+    }
+
+    private void redoEntry(long e) {
+        int i = MoveJournal.cell(e);
+        board.setFlag(i, CellStore.CLUE, false);
+        setCell(xOf(i), yOf(i), Util.TYPES[MoveJournal.nextOrd(e)]);
+    }
+
+    private void undoEntry(long e) {
+        int i = MoveJournal.cell(e);
+        board.setFlag(i, CellStore.CLUE, MoveJournal.prevClue(e));
+        setCell(xOf(i), yOf(i), Util.TYPES[MoveJournal.prevOrd(e)]);
     }
 
     /** Resets board to initial state (clues only). */
     public void restart() {
-        for (int y=0;y<h;y++) for (int x=0;x<w;x++)
-            board[y][x].t = board[y][x].clue ? sol[y][x] : TType.EMPTY;
-        hist.clear(); revealedSolution=false; rebuildGraph();
+        if (pristine != null) restore(pristine);
+        else {
+            board.resetToClues(sol);
+            rebuildGraph();
+        }
+        journal.clear(); revealedSolution=false;
+    }
+
+    /**
+     * 64-bit key of the current board state (cell types), for memo tables,
+     * transposition tables and puzzle caches. Equal boards give equal keys.
+     */
+    public long stateKey() { return hash; }
+
+    /**
+     * Returns an immutable snapshot of the current board: O(chunks) with no
+     * cell copying for the packed layout, an O(cells) copy for SoaBoard.
+     */
+    public BoardSnapshot snapshot() { return board.snapshot(); }
+
+    /**
+     * Publishes an immutable view of the current state for other threads.
+     * A writer that is not the renderer's thread calls it after each step
+     * (or batch) and endPublishing() when done. With the packed layout it
+     * costs O(chunks + W + H): board chunks are shared copy-on-write, so
+     * later writes copy a chunk instead of touching the view. With SoaBoard
+     * the snapshot copies every cell, so it costs O(cells). The solved path
+     * is included only when start and end are joined.
+     */
+    public BoardView publish() {
+        BoardView v = viewOf(board.snapshot());
+        published = v;
+        return v;
+    }
+
+    /** Stops handing out published views; view() reads the live cells again. */
+    public void endPublishing() { published = null; }
+
+    private BoardView viewOf(CellReader cells) {
+        boolean solved = checkSolved();
+        return new BoardView(version, cells, occ.rowCounts(), occ.colCounts(),
+                rowClues, colClues, occ.overLines(), solved, solved ? findPath() : null,
+                conn.danglingEnds(), conn.exits(), loopCells());
+    }
+
+    /** Cells of every closed loop, walked from the loop roots kept by Connectivity. */
+    public int[] loopCells() {
+        int loops = conn.loops();
+        if (loops == 0) return new int[0];
+        int[] res = new int[16];
+        int len = 0;
+        for (int k = 0; k < loops; k++) {
+            int s = conn.loopCell(k), prev = -1, cur = s;
+            do {
+                if (len == res.length) res = Arrays.copyOf(res, len * 2);
+                res[len++] = cur;
+                int next = -1;
+                for (int d = 0; d < 4 && next < 0; d++) {
+                    int nb = link(cur, d);
+                    if (nb >= 0 && nb != prev) next = nb;
+                }
+                prev = cur; cur = next;
+            } while (cur >= 0 && cur != s);
+        }
+        return Arrays.copyOf(res, len);
+    }
+
+    /**
+     * Returns a consistent view for readers such as the renderer, without
+     * locking. While a writer on another thread publishes, this is its last
+     * published view: possibly a few moves behind but never torn. Otherwise
+     * the game is written on the caller's thread, and the view reads the
+     * live cells (built once per version), so no snapshot is taken.
+     */
+    public BoardView view() {
+        BoardView v = published;
+        if (v != null) return v;
+        if (live == null || live.version != version) live = viewOf(board);
+        return live;
+    }
+
+    /**
+     * Jumps the board to a snapshot of this game (or of a copy of it) and
+     * clears the move history. Chunks that are still shared with the snapshot
+     * are skipped, so the cost is proportional to the chunks that changed.
+     * Derived structures are patched cell by cell while that is estimated
+     * (see patchCost) to be cheaper than one rebuild; otherwise all cells are
+     * written and rebuilt once, as for a solved board going back to its
+     * clues, where every patch would relabel the rest of a long chain.
+     */
+    public void restore(BoardSnapshot s) {
+        journal.clear();
+        if (!(board instanceof PackedBoard)) { restoreCells(s); return; }
+        PackedBoard board = (PackedBoard) this.board;
+        int n = board.chunkCount(), chunkCells = 1 << PackedBoard.CHUNK_SHIFT;
+        long cost = 0, limit = patchLimit();
+        boolean changed = false;
+        for (int c = 0; c < n && cost <= limit; c++) {
+            if (board.sameChunk(c, s)) continue;
+            changed = true;
+            for (int i = c * chunkCells, end = Math.min(cells(), i + chunkCells); i < end; i++) cost += patchCost(i, s);
+        }
+        if (!changed) return;
+        if (cost > limit) {
+            for (int c = 0; c < n; c++) board.adoptChunk(c, s);
+            rebuildGraph();
+            return;
+        }
+        for (int c = 0; c < n; c++) {
+            if (board.sameChunk(c, s)) continue;
+            for (int i = c * chunkCells, end = Math.min(cells(), i + chunkCells); i < end; i++) {
+                int now = board.get(i), then = s.get(i);
+                if (now == then) continue;
+                board.set(i, then);
+                if (((now ^ then) & CellStore.TYPE_MASK) != 0) typeChanged(i, now & CellStore.TYPE_MASK);
+            }
+            board.adoptChunk(c, s);
+        }
+    }
+
+    /** restore() for layouts without shared chunks: one diff pass over all cells. */
+    private void restoreCells(BoardSnapshot s) {
+        int n = cells();
+        long cost = 0, limit = patchLimit();
+        for (int i = 0; i < n && cost <= limit; i++) cost += patchCost(i, s);
+        boolean bulk = cost > limit;
+        for (int i = 0; i < n; i++) {
+            int now = board.get(i), then = s.get(i);
+            if (now == then) continue;
+            board.set(i, then);
+            if (!bulk && ((now ^ then) & CellStore.TYPE_MASK) != 0) typeChanged(i, now & CellStore.TYPE_MASK);
+        }
+        if (bulk) rebuildGraph();
+    }
+
+    /** Patch work restore() accepts before it rebuilds instead: a fraction of one O(W·H) rebuild. */
+    private long patchLimit() { return cells() / 8; }
+
+    /**
+     * Estimated work of patching cell i to its state in s: none if its piece
+     * is unchanged, and the size of its component if it has links to lose,
+     * since a removal relabels what is left of the component.
+     */
+    private long patchCost(int i, BoardSnapshot s) {
+        if (board.typeOrd(i) == s.typeOrd(i)) return 0;
+        for (int d = 0; d < 4; d++) if (link(i, d) >= 0) return 1 + conn.componentSize(i);
+        return 1;
+    }
+
+    /**
+     * Returns an independent copy of this game. Board and solution chunks are
+     * shared copy-on-write and the connectivity index is copied, so nothing
+     * is recomputed.
+     */
+    public Game copy() { return new Game(this); }
+
+    /** Copy constructor behind copy(); skips newBoard, so no store is allocated or rebuilt twice. */
+    private Game(Game src) {
+        w = src.w; h = src.h;
+        layout = src.layout;
+        stride = src.stride;
+        System.arraycopy(src.off, 0, off, 0, 4);
+        sx = src.sx; sy = src.sy; ex = src.ex; ey = src.ey;
+        rowClues = src.rowClues.clone();
+        colClues = src.colClues.clone();
+        board = src.board.copy();
+        sol = src.sol.copy();
+        conn = src.conn.copyFor(this);
+        occ = src.occ.copyFor(this);
+        mismatch = src.mismatch.copyFor(this);
+        hash = src.hash;
+        pristine = src.pristine;
+        searchMode = src.searchMode;
+        revealedSolution = src.revealedSolution;
+        pathStrategy = src.pathStrategy;
+        bands = src.bands;
+        pathFill = src.pathFill;
+        pathStraight = src.pathStraight;
     }
 
     /** Reveals the full solution. */
     public void revealSolution() {
-        for (int y=0;y<h;y++) for (int x=0;x<w;x++) board[y][x].t = sol[y][x];
+        board.copyTypesFrom(sol);
         revealedSolution=true; rebuildGraph();
     }
 
     /** Creates a copy of the current board (used by algorithms). */
-    public Cell[][] copyBoard() {
-        Cell[][] copy = new Cell[h][w];
-        for (int y=0;y<h;y++) for (int x=0;x<w;x++) copy[y][x] = board[y][x].copy();
-        return copy;
-    }
+    public CellStore copyBoard() { return board.copy(); }
 
-    /** BFS distance from end point over all cells. */
+    /**
+     * BFS distance from end point over all cells. Cached; callers must not
+     * modify it. A stale table of the same size is refilled in place.
+     */
     public int[][] bfsDistFromEnd() {
-        int[][] dist = new int[h][w];
-        for (int[] row : dist) Arrays.fill(row, -1);
-        Deque<int[]> q = new ArrayDeque<>();
-        q.add(new int[]{ex, ey}); dist[ey][ex]=0;
-        while (!q.isEmpty()) {
-            int[] v=q.poll(); int x=v[0], y=v[1];
-            for (int[] d : new int[][]{{1,0},{-1,0},{0,1},{0,-1}}) {
-                int nx=x+d[0], ny=y+d[1];
-                if (nx>=0&&nx<w&&ny>=0&&ny<h&&dist[ny][nx]==-1) { dist[ny][nx]=dist[y][x]+1; q.add(new int[]{nx,ny}); }
-            }
-        }
-        return dist;
+        if (distMemo.fresh(solVersion)) return distMemo.value();
+        int[][] dist = distMemo.value();
+        if (dist == null || dist.length != h || dist[0].length != w) dist = new int[h][w];
+        GridSearch gs = GridSearch.get();
+        gs.bfs(this, idx(ex, ey), -1, GridSearch.ALL);
+        for (int y = 0; y < h; y++)
+            for (int x = 0, i = idx(0, y); x < w; x++, i++) dist[y][x] = gs.dist(i);
+        return distMemo.put(solVersion, dist);
     }
 
     public void printBoard() {
         for (int y = 0; y < h; y++) {
             for (int x = 0; x < w; x++) {
-                System.out.print(board[y][x].t == TType.EMPTY ? "." : "X");
+                System.out.print(type(x, y) == TType.EMPTY ? "." : "X");
             }
             System.out.println();
         }
@@ -0,0 +1,87 @@
+package Tracks;
+
+/**
+ * Benchmark of "New Game" latency through PuzzleGenerator.
+ *
+ * For each board side it issues a number of generate() requests, as the
+ * New Game button does, once with a single worker (attempts one after
+ * another) and once with one worker per core, and prints the generator's
+ * per-shape report: attempt success rate and p50/p99 request latency.
+ * It then checks that banded generation (Game.bands) winds like the
+ * classic halves: both are walked from regions of the same height, so
+ * their mean path fill must stay within FILL_SLACK of each other. Last,
+ * every THIN shape (strips down to one cell wide) must generate with
+ * backbite paths.
+ *
+ *   java [-Dpaths=BACKBITE] Tracks.GenerationBenchmark [requests] [side ...]
+ *
+ * -Dpaths picks the path generator (Game.PathStrategy) the attempts use.
+ */
+public class GenerationBenchmark {
+
+    private static final int ATTEMPTS = 50;
+    private static final int DIFF = 35;
+    /** Fill check: board width, rows per region, band count and seeds averaged */
+    private static final int FILL_W = 30, FILL_ROWS = 21, FILL_BANDS = 10, FILL_SEEDS = 40;
+    private static final double FILL_SLACK = 1.6;
+    /** Thin and degenerate board shapes, as {w, h}, that backbite generation must handle */
+    private static final int[][] THIN = {{5, 435}, {435, 5}, {2, 300}, {1, 50}, {50, 1}, {1000, 3}, {4, 1000}, {2, 2}};
+
+    public static void main(String[] args) {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int[] sides = {8, 50, 200, 500};
+        if (args.length > 1) {
+            sides = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) sides[i - 1] = Integer.parseInt(args[i]);
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int workers : cores == 1 ? new int[]{1} : new int[]{1, cores}) {
+            PuzzleGenerator gen = new PuzzleGenerator(workers, 42);
+            for (int side : sides)
+                for (int r = 0; r < requests; r++) gen.generate(side, side, DIFF, ATTEMPTS);
+            System.out.println(workers + " worker(s):");
+            System.out.print(gen.report());
+        }
+        checkBandFill();
+        checkThinShapes();
+    }
+
+    /** Generates every THIN shape with backbite paths from a few seeds, failing on the first that does not. */
+    static void checkThinShapes() {
+        for (int[] s : THIN)
+            for (int seed = 0; seed < 10; seed++) {
+                Game g = new Game(s[0], s[1]);
+                g.setSeed(seed);
+                g.pathStrategy = Game.PathStrategy.BACKBITE;
+                if (!g.genPathAndSolution(DIFF))
+                    throw new IllegalStateException("no backbite puzzle for " + s[0] + "x" + s[1] + " seed " + seed);
+            }
+        System.out.println("thin shapes: " + THIN.length + " generated");
+    }
+
+    /** Compares the mean fill of FILL_BANDS bands with that of two halves of the same height. */
+    static void checkBandFill() {
+        double banded = meanFill(FILL_W, FILL_BANDS * FILL_ROWS, FILL_BANDS);
+        double halves = meanFill(FILL_W, 2 * FILL_ROWS, 2);
+        System.out.printf("path fill %dx%d: %.1f%% in %d bands, %.1f%% in halves%n",
+                FILL_W, FILL_ROWS, 100 * banded, FILL_BANDS, 100 * halves);
+        if (banded * FILL_SLACK < halves || banded > halves * FILL_SLACK)
+            throw new IllegalStateException("banded fill strays from the halves fill");
+    }
+
+    /** Mean fraction of cells on the solution path over the DFS boards of FILL_SEEDS seeds that generate. */
+    private static double meanFill(int w, int h, int bands) {
+        double sum = 0;
+        int ok = 0;
+        for (int s = 0; s < FILL_SEEDS; s++) {
+            Game g = new Game(w, h);
+            g.setSeed(s);
+            g.pathStrategy = Game.PathStrategy.DFS;
+            g.bands = bands;
+            if (!g.genPathAndSolution(DIFF)) continue;
+            sum += (double) g.solutionPath().length / (w * h);
+            ok++;
+        }
+        return ok == 0 ? 0 : sum / ok;
+    }
+}
@@ -0,0 +1,231 @@
+package Tracks;
+
+import java.util.Arrays;
+
+/**
+ * Allocation-free breadth-first search over a Game's grid.
+ *
+ * Each thread owns one GridSearch (see get()) whose scratch arrays are
+ * sized to the largest board searched so far and then reused:
+ *  - seen[]   : epoch stamps; a cell is visited in the current search iff
+ *               seen[i] == epoch, so nothing is cleared between searches
+ *  - dist[], parent[] : valid for visited cells only
+ *  - queue[]  : flat int queue of cell indices (each cell enters once)
+ *
+ * Neighbours are found with the game's index offsets (-stride, +stride,
+ * -1, +1 in Dir order). The board's sentinel border (see Game.idx) makes a
+ * bounds test unnecessary: a wall is never on the solution and never
+ * connects, and the ALL mode checks its flag. No per-cell objects or
+ * direction arrays are created. After a search, the accessors read its results until
+ * the next search on the same thread.
+ *
+ * Start-to-end queries over laid track (connected, path) can run in three
+ * modes, see Mode.
+ */
+public final class GridSearch {
+
+    /** Every in-bounds neighbour is reachable */
+    public static final int ALL = 0;
+    /** Only neighbours on the solution path are reachable */
+    public static final int SOLUTION = 1;
+    /** Only neighbours joined by laid track (both pieces connect) are reachable */
+    public static final int TRACK = 2;
+
+    /** Strategies for start-to-end track queries. */
+    public enum Mode {
+        /** Single-source BFS from the start until the end is dequeued */
+        BFS,
+        /** BFS from both ends, alternating the smaller frontier, until they meet */
+        BIDIRECTIONAL,
+        /**
+         * Walks the track from the start. Every piece has at most two ends,
+         * so a component is a simple chain (or loop) and the walk is exact;
+         * it touches only the cells of the start's own component.
+         */
+        CHAIN
+    }
+
+    private static final ThreadLocal<GridSearch> LOCAL = ThreadLocal.withInitial(GridSearch::new);
+
+    /** Returns the calling thread's search kernel. */
+    public static GridSearch get() { return LOCAL.get(); }
+
+    private int[] seen = new int[0], dist = new int[0], parent = new int[0], queue = new int[0], queue2 = new int[0];
+    private int epoch = 0;
+    private final int[] off = new int[4];
+    private int visited = 0;
+    private int meetA, meetB;   // Meeting link of the last bidirectional search (s side, e side)
+
+    private GridSearch() {}
+
+    /** Sizes the scratch arrays for n cells and starts a new epoch. */
+    private void begin(Game g) {
+        int n = g.cells();
+        if (seen.length < n) {
+            seen = new int[n]; dist = new int[n]; parent = new int[n]; queue = new int[n];
+            epoch = 0;
+        }
+        if (epoch >= Integer.MAX_VALUE - 2) { Arrays.fill(seen, 0); epoch = 0; }
+        epoch++;
+        System.arraycopy(g.off, 0, off, 0, 4);
+        visited = 0;
+    }
+
+    /**
+     * Runs a BFS from src, following neighbours allowed by mode (ALL,
+     * SOLUTION or TRACK), and stops early once target is dequeued (pass -1
+     * to explore everything reachable). Returns true if target was reached.
+     */
+    public boolean bfs(Game g, int src, int target, int mode) {
+        begin(g);
+        int head = 0, tail = 0;
+        CellStore board = g.board, sol = g.sol;
+        seen[src] = epoch; dist[src] = 0; parent[src] = src;
+        queue[tail++] = src;
+        while (head < tail) {
+            int cur = queue[head++];
+            visited++;
+            if (cur == target) return true;
+            int mask = mode == TRACK ? Util.MASK[board.typeOrd(cur)] : 0xF;
+            for (int d = 0; d < 4; d++) {
+                if ((mask & (1 << d)) == 0) continue;
+                int nb = cur + off[d];
+                if (seen[nb] == epoch) continue;
+                if (mode == ALL && board.isWall(nb)) continue;
+                if (mode == SOLUTION && sol.typeOrd(nb) == 0) continue;
+                if (mode == TRACK && !Util.connects(board.typeOrd(nb), Util.OPP[d])) continue;
+                seen[nb] = epoch; dist[nb] = dist[cur] + 1; parent[nb] = cur;
+                queue[tail++] = nb;
+            }
+        }
+        return false;
+    }
+
+    // ═════════════════════════════════════════════════════════════════════
+    //  START-TO-END QUERIES
+    // ═════════════════════════════════════════════════════════════════════
+    /** True if laid track joins cells s and e, using the given mode. */
+    public boolean connected(Game g, int s, int e, Mode mode) {
+        switch (mode) {
+            case BIDIRECTIONAL: return meet(g, s, e) >= 0;
+            case CHAIN:         return chain(g, s, e) >= 0;
+            default:            return bfs(g, s, e, TRACK);
+        }
+    }
+
+    /** Cells of the track path from s to e in order, or null if they are not joined. */
+    public int[] path(Game g, int s, int e, Mode mode) {
+        switch (mode) {
+            case BIDIRECTIONAL: {
+                int m = meet(g, s, e);
+                if (m < 0) return null;
+                int a = meetA, b = meetB;
+                int la = dist[a] + 1, lb = dist[b] + 1;
+                int[] res = new int[la + lb - (a == b ? 1 : 0)];
+                for (int k = a, p = la - 1; p >= 0; k = parent[k]) res[p--] = k;
+                int p = la;
+                for (int k = a == b ? parent[b] : b; p < res.length; k = parent[k]) res[p++] = k;
+                return res;
+            }
+            case CHAIN: {
+                int len = chain(g, s, e);
+                return len < 0 ? null : Arrays.copyOf(queue, len);
+            }
+            default:
+                return bfs(g, s, e, TRACK) ? pathTo(e) : null;
+        }
+    }
+
+    /**
+     * Bidirectional BFS over laid track. Returns a meeting cell, or -1 if s
+     * and e are not joined. On success meetA and meetB hold the two ends of
+     * the meeting link (equal only when s == e): meetA was reached from s and
+     * meetB from e, and parent[] leads from each back to its own source.
+     */
+    private int meet(Game g, int s, int e) {
+        begin(g);
+        if (queue2.length < queue.length) queue2 = new int[queue.length];
+        int from = epoch, to = ++epoch;   // Stamps of the s side and the e side
+        CellStore board = g.board;
+        seen[s] = from; dist[s] = 0; parent[s] = s;
+        if (s == e) { meetA = meetB = s; visited = 1; return s; }
+        seen[e] = to;   dist[e] = 0; parent[e] = e;
+        int[] qa = queue, qb = queue2;
+        int ha = 0, ta = 0, hb = 0, tb = 0;
+        qa[ta++] = s; qb[tb++] = e;
+        while (ha < ta && hb < tb) {
+            // Expand one full layer of the smaller frontier (on a tie, of the side that did less work)
+            int fa = ta - ha, fb = tb - hb;
+            boolean sideA = fa < fb || (fa == fb && ha <= hb);
+            int[] q = sideA ? qa : qb;
+            int mine = sideA ? from : to, other = sideA ? to : from;
+            int head = sideA ? ha : hb, tail = sideA ? ta : tb, layerEnd = tail;
+            while (head < layerEnd) {
+                int cur = q[head++];
+                visited++;
+                int mask = Util.MASK[board.typeOrd(cur)];
+                for (int d = 0; d < 4; d++) {
+                    if ((mask & (1 << d)) == 0) continue;
+                    int nb = cur + off[d];
+                    if (seen[nb] == mine) continue;
+                    if (!Util.connects(board.typeOrd(nb), Util.OPP[d])) continue;
+                    if (seen[nb] == other) {
+                        meetA = sideA ? cur : nb;
+                        meetB = sideA ? nb : cur;
+                        return nb;
+                    }
+                    seen[nb] = mine; dist[nb] = dist[cur] + 1; parent[nb] = cur;
+                    q[tail++] = nb;
+                }
+            }
+            if (sideA) { ha = head; ta = tail; } else { hb = head; tb = tail; }
+        }
+        return -1;
+    }
+
+    /**
+     * Walks the track chain from s, trying each of its (at most two) links,
+     * and records the cells in queue[]. Returns the path length if e was
+     * reached, else -1. No visited marks are needed: a chain ends at a dead
+     * end or comes back to s.
+     */
+    private int chain(Game g, int s, int e) {
+        begin(g);
+        if (queue.length == 0) return -1;
+        queue[0] = s;
+        visited = 1;
+        if (s == e) return 1;
+        for (int d0 = 0; d0 < 4; d0++) {
+            int prev = s, cur = g.link(s, d0), len = 1;
+            while (cur >= 0 && cur != s) {
+                queue[len++] = cur;
+                visited++;
+                if (cur == e) return len;
+                int next = -1;
+                for (int d = 0; d < 4 && next < 0; d++) {
+                    int nb = g.link(cur, d);
+                    if (nb >= 0 && nb != prev) next = nb;
+                }
+                prev = cur; cur = next;
+            }
+        }
+        return -1;
+    }
+
+    /** Number of cells dequeued (or walked) by the last search (its work count). */
+    public int visitedCount() { return visited; }
+
+    /** True if the last bfs() reached cell i. */
+    public boolean reached(int i) { return seen[i] == epoch; }
+
+    /** BFS distance of cell i in the last bfs(), or -1 if not reached. */
+    public int dist(int i) { return seen[i] == epoch ? dist[i] : -1; }
+
+    /** Cells from the last bfs() source to target, in order (target must be reached). */
+    public int[] pathTo(int target) {
+        int len = dist[target] + 1;
+        int[] res = new int[len];
+        for (int k = target, p = len - 1; p >= 0; k = parent[k]) res[p--] = k;
+        return res;
+    }
+}
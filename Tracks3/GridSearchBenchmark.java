@@ -0,0 +1,84 @@
+package Tracks;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.function.IntSupplier;
+
+/**
+ * Microbenchmark of GridSearch against the per-call-allocating BFS it
+ * replaced (int[h][w] tables, an int[]{x,y} per queued cell and a fresh
+ * direction array per pop).
+ *
+ * Reports time and bytes allocated per search, measured with the HotSpot
+ * per-thread allocation counter, for an all-cells distance BFS, a BFS over
+ * the solution path and a start-to-end track search on a solved board.
+ * In steady state the GridSearch rows should show 0 bytes (a path search
+ * allocates only its result array).
+ *
+ *   java Tracks.GridSearchBenchmark [side ...]
+ */
+public class GridSearchBenchmark {
+
+    private static final com.sun.management.ThreadMXBean MX =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static long sink;
+
+    public static void main(String[] args) {
+        int[] sides = {14, 100, 400};
+        if (args.length > 0) {
+            sides = new int[args.length];
+            for (int i = 0; i < args.length; i++) sides[i] = Integer.parseInt(args[i]);
+        }
+        System.out.printf("%6s  %-22s %12s %12s%n", "side", "search", "ns/search", "bytes/search");
+        for (int side : sides) {
+            Game g = null;
+            while (g == null) {
+                Game tmp = new Game(side, side);
+                if (tmp.genPathAndSolution(35)) g = tmp;
+            }
+            g.revealSolution();
+            int iters = Math.max(20, 2_000_000 / (g.w * g.h));
+            final Game game = g;
+            int end = g.idx(g.ex, g.ey), start = g.idx(g.sx, g.sy);
+
+            run(side, "legacy dist (all)",      iters, () -> legacyDist(game, false)[game.sy][game.sx]);
+            run(side, "GridSearch dist (all)",  iters, () -> { GridSearch s = GridSearch.get(); s.bfs(game, end, -1, GridSearch.ALL); return s.dist(start); });
+            run(side, "legacy dist (solution)", iters, () -> legacyDist(game, true)[game.sy][game.sx]);
+            run(side, "GridSearch dist (sol)",  iters, () -> { GridSearch s = GridSearch.get(); s.bfs(game, end, -1, GridSearch.SOLUTION); return s.dist(start); });
+            run(side, "GridSearch path (track)", iters, () -> { GridSearch s = GridSearch.get(); return s.bfs(game, start, end, GridSearch.TRACK) ? 1 : 0; });
+        }
+    }
+
+    private static void run(int side, String name, int iters, IntSupplier search) {
+        for (int i = 0; i < iters; i++) sink += search.getAsInt();   // warm-up
+        long tid = Thread.currentThread().getId();
+        long b0 = MX.getThreadAllocatedBytes(tid);
+        long t0 = System.nanoTime();
+        for (int i = 0; i < iters; i++) sink += search.getAsInt();
+        long ns = System.nanoTime() - t0;
+        long bytes = MX.getThreadAllocatedBytes(tid) - b0;
+        System.out.printf("%6d  %-22s %12d %12d%n", side, name, ns / iters, bytes / iters);
+    }
+
+    /** The BFS as it was before GridSearch: over all cells, or over solution cells only. */
+    private static int[][] legacyDist(Game g, boolean solutionOnly) {
+        int[][] dist = new int[g.h][g.w];
+        for (int[] row : dist) Arrays.fill(row, -1);
+        Deque<int[]> q = new ArrayDeque<>();
+        q.add(new int[]{g.ex, g.ey}); dist[g.ey][g.ex] = 0;
+        while (!q.isEmpty()) {
+            int[] v = q.poll(); int x = v[0], y = v[1];
+            for (int[] d : new int[][]{{1,0},{-1,0},{0,1},{0,-1}}) {
+                int nx = x + d[0], ny = y + d[1];
+                if (nx < 0 || nx >= g.w || ny < 0 || ny >= g.h || dist[ny][nx] != -1) continue;
+                if (solutionOnly && g.solType(nx, ny) == TType.EMPTY) continue;
+                dist[ny][nx] = dist[y][x] + 1;
+                q.add(new int[]{nx, ny});
+            }
+        }
+        return dist;
+    }
+}
@@ -0,0 +1,48 @@
+package Tracks;
+
+/**
+ * A single memoised value tagged with the Game version it was computed for.
+ * Usage: if (m.fresh(v)) return m.value(); ... return m.put(v, result);
+ *
+ * @param <T> Type of the cached value
+ */
+public final class Memo<T> {
+
+    /** Number of lookups answered from the cache */
+    public long hits;
+
+    /** Number of lookups that had to recompute */
+    public long misses;
+
+    private long version = -1;
+    private T value;
+
+    /** Returns true (and counts a hit) if the cached value belongs to version v. */
+    public boolean fresh(long v) {
+        if (version == v) { hits++; return true; }
+        misses++;
+        return false;
+    }
+
+    /** Returns the cached value. */
+    public T value() { return value; }
+
+    /** Stores a value computed for version v and returns it. */
+    public T put(long v, T val) {
+        version = v;
+        value = val;
+        return val;
+    }
+
+    /** Forgets the cached value. */
+    public void clear() {
+        version = -1;
+        value = null;
+    }
+
+    @Override
+    public String toString() {
+        long n = hits + misses;
+        return hits + "/" + n + " hits" + (n == 0 ? "" : String.format(" (%.0f%%)", 100.0 * hits / n));
+    }
+}
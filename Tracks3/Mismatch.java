@@ -0,0 +1,84 @@
+package Tracks;
+
+import java.util.Arrays;
+
+/**
+ * Running difference between a Game's board and its solution.
+ *
+ * A cell is wrong when its piece differs from the solution's piece. Wrong
+ * cells are kept in a bitset (one bit per cell) together with two counts:
+ * all wrong cells, and wrong cells that belong to the solution path
+ * ("missing" pieces). Each cell edit updates them in O(1), so "does the
+ * board equal the solution" and "how many cells are wrong" are O(1), and
+ * listing the wrong cells costs O(W·H / 64 + mismatches).
+ */
+public final class Mismatch {
+
+    private final Game g;
+    private final long[] bits;
+    private int count = 0, missing = 0;
+
+    /** Creates an index for the given game (call rebuild() before use). */
+    public Mismatch(Game g) {
+        this.g = g;
+        bits = new long[(g.cells() + 63) >>> 6];
+    }
+
+    /** Returns a copy of this index bound to g, which must hold the same board and solution. */
+    public Mismatch copyFor(Game g) {
+        Mismatch m = new Mismatch(g);
+        System.arraycopy(bits, 0, m.bits, 0, bits.length);
+        m.count = count;
+        m.missing = missing;
+        return m;
+    }
+
+    /**
+     * Recomputes the index from the board and solution. Only cells that are
+     * non-EMPTY on either side can be wrong, so empty runs are skipped.
+     */
+    public void rebuild() {
+        Arrays.fill(bits, 0L);
+        count = 0; missing = 0;
+        CellStore board = g.board, sol = g.sol;
+        for (int i = board.nextNonEmpty(0); i >= 0; i = board.nextNonEmpty(i + 1)) update(i, true);
+        for (int i = sol.nextNonEmpty(0); i >= 0; i = sol.nextNonEmpty(i + 1))
+            if (board.typeOrd(i) == 0) update(i, true);
+    }
+
+    /** Updates the index after cell i changed piece. O(1). */
+    public void cellChanged(int i) { update(i, false); }
+
+    private void update(int i, boolean fresh) {
+        boolean was = !fresh && (bits[i >>> 6] & 1L << i) != 0;
+        int solOrd = g.sol.typeOrd(i);
+        boolean now = g.board.typeOrd(i) != solOrd;
+        if (was == now) return;
+        int d = now ? 1 : -1;
+        count += d;
+        if (solOrd != 0) missing += d;
+        bits[i >>> 6] ^= 1L << i;
+    }
+
+    /** Number of cells whose piece differs from the solution. */
+    public int count() { return count; }
+
+    /** Number of solution-path cells that do not hold their solution piece yet. */
+    public int missing() { return missing; }
+
+    /** True if cell i differs from the solution. */
+    public boolean isWrong(int i) { return (bits[i >>> 6] & 1L << i) != 0; }
+
+    /** First wrong cell at or after from, or -1. Skips 64 correct cells per word. */
+    public int nextWrong(int from) {
+        int n = g.cells();
+        if (from >= n) return -1;
+        int wi = from >>> 6;
+        long w = bits[wi] & (-1L << from);
+        while (w == 0) {
+            if (++wi == bits.length) return -1;
+            w = bits[wi];
+        }
+        return (wi << 6) + Long.numberOfTrailingZeros(w);
+    }
+}
@@ -0,0 +1,98 @@
+package Tracks;
+
+/**
+ * Primitive undo/redo journal. Each edit is one long:
+ *  - bits  0..31 : cell index
+ *  - bits 32..34 : TType ordinal before the edit
+ *  - bits 35..37 : TType ordinal after the edit
+ *  - bit  38     : cell was a clue before the edit
+ *  - bit  39     : edit continues the batch of the entry before it (see
+ *                  Game.applyMoves); undo and redo treat a batch as one move
+ *
+ * Entries live in a growable ring of longs. Entries before the cursor can
+ * be undone; entries after it can be redone until a new edit truncates
+ * them. With a cap set, the oldest entries are dropped once the ring is
+ * full, so long automated runs use bounded memory. Recording, undoing and
+ * redoing never allocate (growth only doubles the ring, and stops at the cap).
+ */
+public final class MoveJournal {
+
+    private long[] buf = new long[64];
+    private int start = 0;     // Physical index of the oldest entry
+    private int count = 0;     // Entries stored (undoable + redoable)
+    private int cursor = 0;    // Entries that can be undone
+    private long dropped = 0;  // Entries discarded because of the cap
+    private int cap = 0;       // Max entries kept (0 = unbounded)
+
+    /** Marks an entry as part of the same batch as the entry before it */
+    public static final long BATCH = 1L << 39;
+
+    /** Packs one edit into a journal entry. */
+    public static long encode(int cell, int prevOrd, int nextOrd, boolean prevClue) {
+        return (cell & 0xFFFFFFFFL) | (long) prevOrd << 32 | (long) nextOrd << 35 | (prevClue ? 1L << 38 : 0L);
+    }
+
+    public static int cell(long e)         { return (int) e; }
+    public static int prevOrd(long e)      { return (int) (e >>> 32) & 7; }
+    public static int nextOrd(long e)      { return (int) (e >>> 35) & 7; }
+    public static boolean prevClue(long e) { return (e & 1L << 38) != 0; }
+    public static boolean inBatch(long e)  { return (e & BATCH) != 0; }
+
+    /** Limits the journal to at most maxEntries (0 = unbounded); drops the oldest if needed. */
+    public void setCap(int maxEntries) {
+        cap = Math.max(0, maxEntries);
+        if (cap > 0) while (count > cap) dropOldest();
+    }
+
+    /** Records a new edit at the cursor, discarding any redo entries. */
+    public void record(long e) {
+        count = cursor;
+        if (cap > 0 && count == cap) dropOldest();
+        else if (count == buf.length) grow();
+        buf[(start + count) % buf.length] = e;
+        count++;
+        cursor = count;
+    }
+
+    private void dropOldest() {
+        start = (start + 1) % buf.length;
+        count--;
+        if (cursor > 0) cursor--;
+        dropped++;
+    }
+
+    private void grow() {
+        int n = buf.length * 2;
+        if (cap > 0) n = Math.min(n, cap);
+        long[] nb = new long[n];
+        for (int k = 0; k < count; k++) nb[k] = buf[(start + k) % buf.length];
+        buf = nb;
+        start = 0;
+    }
+
+    public boolean canUndo() { return cursor > 0; }
+    public boolean canRedo() { return cursor < count; }
+
+    /** Steps back over the last edit and returns it. Call only if canUndo(). */
+    public long undo() { return buf[(start + --cursor) % buf.length]; }
+
+    /** Steps forward over the next undone edit and returns it. Call only if canRedo(). */
+    public long redo() { return buf[(start + cursor++) % buf.length]; }
+
+    /** Returns the next undone edit without stepping over it. Call only if canRedo(). */
+    public long peekRedo() { return buf[(start + cursor) % buf.length]; }
+
+    /** Absolute position of the cursor: number of edits recorded before it since the last clear. */
+    public long position() { return dropped + cursor; }
+
+    /** Oldest absolute position that can still be rewound to. */
+    public long oldestPosition() { return dropped; }
+
+    /** Number of edits that can currently be undone. */
+    public int undoable() { return cursor; }
+
+    /** Forgets all entries. */
+    public void clear() {
+        start = 0; count = 0; cursor = 0; dropped = 0;
+    }
+}
@@ -0,0 +1,113 @@
+package Tracks;
+
+import java.util.Arrays;
+
+/**
+ * Live row and column occupancy of a Game's board.
+ *
+ * Keeps the number of non-EMPTY cells in every row and column, updated in
+ * O(1) per cell edit, so comparing a line against its clue never scans the
+ * board. Lines are numbered rows first (row r is line r, column c is line
+ * h + c). Lines holding more pieces than their clue are kept in a sparse
+ * set that can be listed in O(violations), and the number of lines that
+ * match their clue exactly is tracked, so "every clue is met" is O(1).
+ */
+public final class Occupancy {
+
+    private final Game g;
+    private final int[] row, col;
+
+    // Sparse set of over-full lines: dense[0..over) holds them, pos[line] is the slot or -1
+    private final int[] dense, pos;
+    private int over = 0;
+
+    /** Lines whose count equals their clue */
+    private int satisfied = 0;
+
+    /** Creates counters for the given game (call rebuild() before use). */
+    public Occupancy(Game g) {
+        this.g = g;
+        row = new int[g.h];
+        col = new int[g.w];
+        dense = new int[g.h + g.w];
+        pos = new int[g.h + g.w];
+    }
+
+    /** Returns a copy of these counters bound to g, which must hold the same board and clues. */
+    public Occupancy copyFor(Game g) {
+        Occupancy o = new Occupancy(g);
+        System.arraycopy(row, 0, o.row, 0, row.length);
+        System.arraycopy(col, 0, o.col, 0, col.length);
+        System.arraycopy(dense, 0, o.dense, 0, dense.length);
+        System.arraycopy(pos, 0, o.pos, 0, pos.length);
+        o.over = over;
+        o.satisfied = satisfied;
+        return o;
+    }
+
+    /** Recounts every line from the current board and clues. O(W·H). */
+    public void rebuild() {
+        Arrays.fill(row, 0);
+        Arrays.fill(col, 0);
+        for (int i = g.board.nextNonEmpty(0); i >= 0; i = g.board.nextNonEmpty(i + 1)) {
+            row[g.yOf(i)]++;
+            col[g.xOf(i)]++;
+        }
+        Arrays.fill(pos, -1);
+        over = 0; satisfied = 0;
+        for (int r = 0; r < row.length; r++) enter(r, row[r] - g.rowClues[r]);
+        for (int c = 0; c < col.length; c++) enter(row.length + c, col[c] - g.colClues[c]);
+    }
+
+    /** Updates the counters after cell i changed from the piece with ordinal oldOrd. O(1). */
+    public void cellChanged(int i, int oldOrd) {
+        int delta = (g.board.typeOrd(i) != 0 ? 1 : 0) - (oldOrd != 0 ? 1 : 0);
+        if (delta == 0) return;
+        int r = g.yOf(i), c = g.xOf(i);
+        leave(r, row[r] - g.rowClues[r]);
+        row[r] += delta;
+        enter(r, row[r] - g.rowClues[r]);
+        int line = row.length + c;
+        leave(line, col[c] - g.colClues[c]);
+        col[c] += delta;
+        enter(line, col[c] - g.colClues[c]);
+    }
+
+    /** Adds a line with the given count-minus-clue to the aggregates. */
+    private void enter(int line, int diff) {
+        if (diff == 0) satisfied++;
+        else if (diff > 0) { pos[line] = over; dense[over++] = line; }
+    }
+
+    /** Removes a line with the given count-minus-clue from the aggregates. */
+    private void leave(int line, int diff) {
+        if (diff == 0) satisfied--;
+        else if (diff > 0) {
+            int k = pos[line], last = dense[--over];
+            dense[k] = last; pos[last] = k;
+            pos[line] = -1;
+        }
+    }
+
+    public int rowCount(int r) { return row[r]; }
+    public int colCount(int c) { return col[c]; }
+
+    public boolean rowOver(int r)  { return row[r] > g.rowClues[r]; }
+    public boolean rowUnder(int r) { return row[r] < g.rowClues[r]; }
+    public boolean colOver(int c)  { return col[c] > g.colClues[c]; }
+    public boolean colUnder(int c) { return col[c] < g.colClues[c]; }
+
+    /** Number of lines holding more pieces than their clue. */
+    public int overCount() { return over; }
+
+    /** k-th over-full line (0 <= k < overCount()); rows are 0..h-1, columns h..h+w-1. */
+    public int overLine(int k) { return dense[k]; }
+
+    /** Copies of the row counts, column counts and over-full lines (for BoardView). */
+    public int[] rowCounts() { return row.clone(); }
+    public int[] colCounts() { return col.clone(); }
+    public int[] overLines() { return Arrays.copyOf(dense, over); }
+
+    /** True if every row and column holds exactly its clue count. */
+    public boolean allCluesMet() { return satisfied == row.length + col.length; }
+}
@@ -0,0 +1,192 @@
+package Tracks;
+
+import java.util.Arrays;
+
+/**
+ * Bit-packed cell storage for a Tracks board.
+ *
+ * Each cell's 8-bit slot (see CellStore) sits inside a long word, 8 cells
+ * per word. Cells are addressed by a flat index (see Game.idx). Words are grouped in
+ * fixed-size chunks that are copy-on-write: copies and snapshots share
+ * chunks, and a chunk is only duplicated the first time it is written
+ * after being shared. Copying a board or taking a snapshot therefore costs
+ * one pointer per chunk, and writes cost at most one chunk copy.
+ */
+public final class PackedBoard implements CellStore {
+
+    /** Bits used by one cell slot */
+    static final int SLOT_BITS = 8;
+
+    /** Number of cell slots in one long word */
+    static final int SLOTS_PER_WORD = 64 / SLOT_BITS;
+
+    /** log2 of the number of cells in one chunk (512 cells = 64 words) */
+    static final int CHUNK_SHIFT = 9;
+
+    /** Number of long words in one chunk */
+    static final int CHUNK_WORDS = (1 << CHUNK_SHIFT) / SLOTS_PER_WORD;
+
+    /** TYPE_MASK repeated over the 8 slots of a word */
+    private static final long WORD_TYPES = 0x0707070707070707L;
+
+    /** CLUE repeated over the 8 slots of a word */
+    private static final long WORD_CLUES = 0x0808080808080808L;
+    /** WALL repeated over the 8 slots of a word */
+    private static final long WORD_WALLS = 0x4040404040404040L;
+
+    /** Number of addressable cells */
+    public final int size;
+
+    /** Packed cell slots, CHUNK_WORDS words per chunk */
+    long[][] chunks;
+
+    /** shared[c] is true while chunks[c] may be referenced by another board or snapshot */
+    private boolean[] shared;
+
+    /** Creates an all-EMPTY board with the given number of cells. */
+    public PackedBoard(int size) {
+        this.size = size;
+        int n = Math.max(1, (size + (1 << CHUNK_SHIFT) - 1) >>> CHUNK_SHIFT);
+        chunks = new long[n][CHUNK_WORDS];
+        shared = new boolean[n];
+    }
+
+    @Override public int size() { return size; }
+
+    /** Number of chunks. */
+    public int chunkCount() { return chunks.length; }
+
+    /** Returns chunk c ready for writing, unsharing it first if needed. */
+    private long[] writable(int c) {
+        if (shared[c]) { chunks[c] = chunks[c].clone(); shared[c] = false; }
+        return chunks[c];
+    }
+
+    /** Returns the raw 8-bit slot of cell i. */
+    public int get(int i) {
+        return (int) (chunks[i >>> CHUNK_SHIFT][(i >>> 3) & (CHUNK_WORDS - 1)] >>> ((i & 7) << 3)) & 0xFF;
+    }
+
+    /** Overwrites the raw 8-bit slot of cell i. */
+    public void set(int i, int v) {
+        long[] words = writable(i >>> CHUNK_SHIFT);
+        int wi = (i >>> 3) & (CHUNK_WORDS - 1), sh = (i & 7) << 3;
+        words[wi] = (words[wi] & ~(0xFFL << sh)) | ((long) (v & 0xFF) << sh);
+    }
+
+    /** Returns the track type ordinal of cell i. */
+    public int typeOrd(int i) { return get(i) & TYPE_MASK; }
+
+    /** Returns the track type of cell i. */
+    @Override public TType type(int i) { return Util.TYPES[get(i) & TYPE_MASK]; }
+
+    /** Sets the track type of cell i, keeping its flags. */
+    public void setType(int i, TType t) { set(i, (get(i) & ~TYPE_MASK) | t.ordinal()); }
+
+    public boolean isClue(int i)  { return (get(i) & CLUE)  != 0; }
+    public boolean isStart(int i) { return (get(i) & START) != 0; }
+    public boolean isEnd(int i)   { return (get(i) & END)   != 0; }
+    @Override public boolean isWall(int i) { return (get(i) & WALL) != 0; }
+
+    /** Sets or clears a flag bit (CLUE, START, END or WALL) of cell i. */
+    public void setFlag(int i, int flag, boolean on) {
+        int v = get(i);
+        set(i, on ? v | flag : v & ~flag);
+    }
+
+    /** Resets every cell to EMPTY with no flags except WALL. */
+    public void clear() {
+        for (int c = 0; c < chunks.length; c++) {
+            long[] words = writable(c);
+            for (int k = 0; k < CHUNK_WORDS; k++) words[k] &= WORD_WALLS;
+        }
+    }
+
+    /** First non-EMPTY cell at or after from; skips 8 cells per empty word. */
+    public int nextNonEmpty(int from) {
+        if (from >= size) return -1;
+        int words = chunks.length * CHUNK_WORDS;
+        int wi = from >>> 3;
+        long bits = word(wi) & WORD_TYPES & (-1L << ((from & 7) << 3));
+        while (bits == 0) {
+            if (++wi >= words) return -1;
+            bits = word(wi) & WORD_TYPES;
+        }
+        int i = (wi << 3) + (Long.numberOfTrailingZeros(bits) >>> 3);
+        return i < size ? i : -1;
+    }
+
+    private long word(int wi) { return chunks[wi / CHUNK_WORDS][wi & (CHUNK_WORDS - 1)]; }
+
+    /** Copies sol's types word by word; chunks whose types already match stay shared. */
+    public void copyTypesFrom(CellStore sol) {
+        if (!(sol instanceof PackedBoard)) {
+            for (int i = 0; i < size; i++) set(i, (get(i) & ~TYPE_MASK) | sol.typeOrd(i));
+            return;
+        }
+        PackedBoard s = (PackedBoard) sol;
+        for (int c = 0; c < chunks.length; c++) {
+            long[] src = s.chunks[c], words = chunks[c];
+            for (int k = 0; k < CHUNK_WORDS; k++) {
+                long nw = (words[k] & ~WORD_TYPES) | (src[k] & WORD_TYPES);
+                if (nw != words[k]) { words = writable(c); words[k] = nw; }
+            }
+        }
+    }
+
+    /**
+     * Sets clue cells to sol's type and the rest to EMPTY, word by word: the
+     * clue bits of a word are widened into a type mask, so no per-cell branch.
+     */
+    public void resetToClues(CellStore sol) {
+        if (!(sol instanceof PackedBoard)) {
+            for (int i = 0; i < size; i++)
+                setType(i, isClue(i) ? sol.type(i) : TType.EMPTY);
+            return;
+        }
+        PackedBoard s = (PackedBoard) sol;
+        for (int c = 0; c < chunks.length; c++) {
+            long[] src = s.chunks[c], words = chunks[c];
+            for (int k = 0; k < CHUNK_WORDS; k++) {
+                long keep = ((words[k] & WORD_CLUES) >>> 3) * TYPE_MASK;
+                long nw = (words[k] & ~WORD_TYPES) | (src[k] & keep);
+                if (nw != words[k]) { words = writable(c); words[k] = nw; }
+            }
+        }
+    }
+
+    /** Makes this board hold the same cells as src (chunks are shared, copy-on-write). */
+    public void copyFrom(PackedBoard src) {
+        System.arraycopy(src.chunks, 0, chunks, 0, chunks.length);
+        Arrays.fill(shared, true);
+        Arrays.fill(src.shared, true);
+    }
+
+    /** Returns an independent copy of this board, sharing chunks until either side writes. */
+    @Override public PackedBoard copy() {
+        PackedBoard c = new PackedBoard(size, chunks.length);
+        c.copyFrom(this);
+        return c;
+    }
+
+    private PackedBoard(int size, int chunkCount) {
+        this.size = size;
+        chunks = new long[chunkCount][];
+        shared = new boolean[chunkCount];
+    }
+
+    /** Returns an immutable snapshot of the current cells. O(chunks). */
+    public BoardSnapshot snapshot() {
+        Arrays.fill(shared, true);
+        return new BoardSnapshot(size, chunks.clone());
+    }
+
+    /** True if chunk c is the very same (unmodified) chunk as in snapshot s. */
+    boolean sameChunk(int c, BoardSnapshot s) { return chunks[c] == s.chunks[c]; }
+
+    /** Replaces chunk c with the snapshot's chunk (shared). */
+    void adoptChunk(int c, BoardSnapshot s) {
+        chunks[c] = s.chunks[c];
+        shared[c] = true;
+    }
+}
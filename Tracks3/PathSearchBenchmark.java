@@ -0,0 +1,57 @@
+package Tracks;
+
+/**
+ * Benchmark of the start-to-end search modes (GridSearch.Mode) across
+ * board sizes.
+ *
+ * Each board is solved (solution revealed), then searched twice per mode:
+ * connected as is, and broken by clearing the path cell nearest the end,
+ * which makes BFS exhaust the start's side while the bidirectional search
+ * stops as soon as the smaller side runs dry. Reports time per path query
+ * and the cells each mode touched.
+ *
+ *   java Tracks.PathSearchBenchmark [side ...]
+ */
+public class PathSearchBenchmark {
+
+    private static long sink;
+
+    public static void main(String[] args) {
+        int[] sides = {20, 100, 300};
+        if (args.length > 0) {
+            sides = new int[args.length];
+            for (int i = 0; i < args.length; i++) sides[i] = Integer.parseInt(args[i]);
+        }
+        System.out.printf("%6s %8s  %-10s %-14s %12s %10s%n", "side", "path", "board", "mode", "ns/query", "cells");
+        for (int side : sides) {
+            Game g = null;
+            while (g == null) {
+                Game tmp = new Game(side, side);
+                if (tmp.genPathAndSolution(35)) g = tmp;
+            }
+            g.revealSolution();
+            int[] sol = g.solutionPath();
+            run(g, side, sol.length, "connected");
+
+            int cut = sol[Math.max(1, sol.length - 2)];
+            g.setCell(g.xOf(cut), g.yOf(cut), TType.EMPTY);
+            run(g, side, sol.length, "broken");
+        }
+    }
+
+    private static void run(Game g, int side, int pathLen, String board) {
+        int s = g.idx(g.sx, g.sy), e = g.idx(g.ex, g.ey);
+        GridSearch gs = GridSearch.get();
+        int iters = Math.max(200, 20_000_000 / Math.max(1, pathLen * 20));
+        for (GridSearch.Mode mode : GridSearch.Mode.values()) {
+            for (int i = 0; i < iters; i++) sink += gs.connected(g, s, e, mode) ? 1 : 0;   // warm-up
+            long t0 = System.nanoTime();
+            for (int i = 0; i < iters; i++) {
+                int[] p = gs.path(g, s, e, mode);
+                sink += p == null ? 0 : p.length;
+            }
+            long ns = (System.nanoTime() - t0) / iters;
+            System.out.printf("%6d %8d  %-10s %-14s %12d %10d%n", side, pathLen, board, mode, ns, gs.visitedCount());
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package Tracks;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Speculative parallel puzzle generation.
+ *
+ * A generate() call runs up to maxAttempts independent attempts of
+ * Game.genPathAndSolution on a ForkJoinPool, one per worker at a time.
+ * Every attempt gets its own seed drawn from a SplittableRandom stream, so
+ * attempts never share random state. The first attempt to succeed wins;
+ * the attempts still running are cancelled (Game.cancelGeneration) and no
+ * new ones start.
+ *
+ * Per (width, height, difficulty) the generator keeps the attempt success
+ * rate and the latency of recent generate() calls, which is what a player
+ * waits for after pressing "New Game" (see Stats).
+ */
+public final class PuzzleGenerator {
+
+    private static final PuzzleGenerator SHARED =
+            new PuzzleGenerator(Runtime.getRuntime().availableProcessors());
+
+    /** Returns the generator shared by the UI. */
+    public static PuzzleGenerator shared() { return SHARED; }
+
+    private final ForkJoinPool pool;                  // Daemon worker threads
+    private final SplittableRandom seeds;             // Root seed stream; split once per call
+    private final Map<Long, Stats> stats = new ConcurrentHashMap<>();
+
+    /** Creates a generator running up to parallelism attempts at once, seeded from the clock. */
+    public PuzzleGenerator(int parallelism) {
+        this(parallelism, new SplittableRandom());
+    }
+
+    /** Creates a generator with a fixed root seed (reproducible when parallelism is 1). */
+    public PuzzleGenerator(int parallelism, long seed) {
+        this(parallelism, new SplittableRandom(seed));
+    }
+
+    /** Creates a generator whose workers run at the lowest thread priority, for background refills. */
+    public static PuzzleGenerator background(int parallelism) {
+        return new PuzzleGenerator(parallelism, new SplittableRandom(), Thread.MIN_PRIORITY);
+    }
+
+    private PuzzleGenerator(int parallelism, SplittableRandom seeds) {
+        this(parallelism, seeds, Thread.NORM_PRIORITY);
+    }
+
+    private PuzzleGenerator(int parallelism, SplittableRandom seeds, int priority) {
+        this.pool = new ForkJoinPool(Math.max(1, parallelism), p -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            t.setPriority(priority);
+            return t;
+        }, null, false);
+        this.seeds = seeds;
+    }
+
+    /** Number of attempts run at the same time. */
+    public int parallelism() { return pool.getParallelism(); }
+
+    /** generate() without progress reports. */
+    public Game generate(int w, int h, int diffPercent, int maxAttempts) {
+        return generate(w, h, diffPercent, maxAttempts, null);
+    }
+
+    /**
+     * Generates a puzzle, trying up to maxAttempts seeds in parallel, and
+     * returns the first success, or null if every attempt failed or the
+     * calling thread was interrupted (running attempts are then cancelled).
+     * progress, if given, receives the number of failed attempts so far; it
+     * is called from worker threads.
+     */
+    public Game generate(int w, int h, int diffPercent, int maxAttempts, IntConsumer progress) {
+        long t0 = System.nanoTime();
+        Stats st = stats(w, h, diffPercent);
+        long[] attemptSeeds = new long[maxAttempts];
+        SplittableRandom stream;
+        synchronized (seeds) { stream = seeds.split(); }
+        for (int a = 0; a < maxAttempts; a++) attemptSeeds[a] = stream.nextLong();
+
+        CompletableFuture<Game> winner = new CompletableFuture<>();
+        Set<Game> running = ConcurrentHashMap.newKeySet();
+        AtomicInteger next = new AtomicInteger(), failed = new AtomicInteger();
+        int workers = Math.min(pool.getParallelism(), maxAttempts);
+        AtomicInteger live = new AtomicInteger(workers);
+        if (workers == 0) winner.complete(null);
+
+        for (int k = 0; k < workers; k++) {
+            pool.execute(() -> {
+                try {
+                    for (int a; !winner.isDone() && (a = next.getAndIncrement()) < maxAttempts; ) {
+                        Game g = new Game(w, h);
+                        g.setSeed(attemptSeeds[a]);
+                        running.add(g);
+                        if (winner.isDone()) g.cancelGeneration();   // Lost the race before starting
+                        boolean ok = g.genPathAndSolution(diffPercent);
+                        running.remove(g);
+                        if (g.generationCancelled()) break;
+                        st.attempt(ok);
+                        if (ok) {
+                            if (winner.complete(g)) for (Game other : running) other.cancelGeneration();
+                            break;
+                        }
+                        int f = failed.incrementAndGet();
+                        if (progress != null) progress.accept(f);
+                    }
+                } catch (Throwable t) {
+                    winner.completeExceptionally(t);
+                } finally {
+                    if (live.decrementAndGet() == 0) winner.complete(null);
+                }
+            });
+        }
+
+        Game g;
+        try {
+            g = winner.get();
+        } catch (InterruptedException e) {
+            winner.complete(null);
+            for (Game other : running) other.cancelGeneration();
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Puzzle generation failed", e.getCause());
+        }
+        st.request(g != null, System.nanoTime() - t0);
+        return g;
+    }
+
+    /** Statistics for one (width, height, difficulty), created on first use. */
+    public Stats stats(int w, int h, int diffPercent) {
+        return stats.computeIfAbsent((long) w << 32 | (long) h << 8 | diffPercent,
+                k -> new Stats(w, h, diffPercent));
+    }
+
+    /** One line per (width, height, difficulty) generated so far, in key order. */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        for (Stats st : new TreeMap<>(stats).values()) sb.append(st).append('\n');
+        return sb.toString();
+    }
+
+    // ═════════════════════════════════════════════════════════════════════
+    //  STATISTICS
+    // ═════════════════════════════════════════════════════════════════════
+    /**
+     * Attempt and request counters for one puzzle shape. Latencies of the
+     * last LATENCY_WINDOW generate() calls are kept in a ring for the
+     * percentiles. Updated from worker threads; reads are approximate
+     * while generation is running.
+     */
+    public static final class Stats {
+
+        /** Number of recent request latencies kept for percentiles */
+        static final int LATENCY_WINDOW = 1024;
+
+        public final int w, h, diffPercent;
+        private long attempts, successes, requests, failedRequests;
+        private final long[] latencyNs = new long[LATENCY_WINDOW];
+
+        Stats(int w, int h, int diffPercent) {
+            this.w = w; this.h = h; this.diffPercent = diffPercent;
+        }
+
+        synchronized void attempt(boolean ok) {
+            attempts++;
+            if (ok) successes++;
+        }
+
+        synchronized void request(boolean ok, long ns) {
+            latencyNs[(int) (requests % LATENCY_WINDOW)] = ns;
+            requests++;
+            if (!ok) failedRequests++;
+        }
+
+        /** Attempts that ran to completion (cancelled ones are not counted). */
+        public synchronized long attempts() { return attempts; }
+
+        /** generate() calls, and how many of them returned null. */
+        public synchronized long requests() { return requests; }
+        public synchronized long failedRequests() { return failedRequests; }
+
+        /** Fraction of completed attempts that produced a puzzle. */
+        public synchronized double successRate() {
+            return attempts == 0 ? 0 : successes / (double) attempts;
+        }
+
+        /** Latency percentile (0..100) of recent generate() calls, in milliseconds. */
+        public synchronized double latencyMs(double percentile) {
+            int n = (int) Math.min(requests, LATENCY_WINDOW);
+            if (n == 0) return 0;
+            long[] sorted = Arrays.copyOf(latencyNs, n);
+            Arrays.sort(sorted);
+            int k = (int) Math.ceil(percentile / 100.0 * n) - 1;
+            return sorted[Math.max(0, Math.min(n - 1, k))] / 1e6;
+        }
+
+        /** p99 latency of recent generate() calls, in milliseconds. */
+        public double p99Ms() { return latencyMs(99); }
+
+        @Override public synchronized String toString() {
+            return String.format("%d×%d @%d%%: %d requests (%d failed), %d attempts, success %.1f%%, p50 %.1f ms, p99 %.1f ms",
+                    w, h, diffPercent, requests, failedRequests, attempts, 100 * successRate(),
+                    latencyMs(50), latencyMs(99));
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package Tracks;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Pool of pre-generated puzzles per (width, height, difficulty).
+ *
+ * take() hands out a ready puzzle in O(1) and records the shape as wanted;
+ * a daemon thread keeps every wanted shape topped up to depth puzzles in
+ * the background, generating through its own low-priority PuzzleGenerator
+ * (speculative attempts and per-shape stats, see generator()). A miss does
+ * not mark the shape: the caller generates it in the foreground between
+ * beginForeground and endForeground, which marks it afterwards. The
+ * producer leaves such a shape alone, and a refill of it already running
+ * is cancelled, so the same shape is never generated twice at once and
+ * the foreground run has the cores to itself. A shape whose refill fails
+ * is paused until it is asked for again. Shapes are kept in LRU order: a
+ * shape not asked for among the last maxKeys distinct shapes is dropped
+ * with its puzzles, and when the estimated memory of pooled puzzles would
+ * exceed maxBytes, puzzles of the least recently used shapes go first.
+ * Puzzles are handed out at most once.
+ *
+ * Metrics: hit rate of take(), and refill throughput (puzzles produced per
+ * second the producer spent generating).
+ */
+public final class PuzzlePool {
+
+    /** Default puzzles kept per shape */
+    public static final int DEFAULT_DEPTH = 3;
+    /** Default memory cap of pooled puzzles */
+    public static final long DEFAULT_MAX_BYTES = 64L << 20;
+    /** Default number of shapes kept */
+    public static final int DEFAULT_MAX_KEYS = 8;
+    /** Generation attempts per produced puzzle before the shape is paused */
+    private static final int ATTEMPTS = 50;
+
+    private static PuzzlePool shared;
+
+    /** Returns the pool used by the UI, starting its producer on first use. */
+    public static synchronized PuzzlePool shared() {
+        if (shared == null) shared = new PuzzlePool(DEFAULT_DEPTH, DEFAULT_MAX_BYTES, DEFAULT_MAX_KEYS,
+                PuzzleGenerator.background(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)));
+        return shared;
+    }
+
+    private final int depth, maxKeys;
+    private final long maxBytes;
+
+    /** Shapes in LRU order (least recently used first); guarded by this */
+    private final LinkedHashMap<Long, ArrayDeque<Game>> pools = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0;
+    private long hits, misses, produced, failedRefills, busyNs;
+    /** Shapes being generated in the foreground (with nesting counts); guarded by this */
+    private final Map<Long, Integer> foreground = new HashMap<>();
+    /** Shapes whose last refill failed; skipped until asked for again; guarded by this */
+    private final Set<Long> paused = new HashSet<>();
+    /** Shape the producer is generating (-1: none), and whether that run was cancelled; guarded by this */
+    private long inFlight = -1;
+    private boolean inFlightCancelled;
+
+    private final PuzzleGenerator gen;
+    private final Thread producer;
+    private volatile boolean stopped = false;
+
+    /**
+     * Creates a pool keeping up to depth puzzles per shape, at most maxBytes
+     * of puzzles in total and at most maxKeys shapes, and starts its producer,
+     * which generates with gen.
+     */
+    public PuzzlePool(int depth, long maxBytes, int maxKeys, PuzzleGenerator gen) {
+        this.depth = Math.max(1, depth);
+        this.maxBytes = maxBytes;
+        this.maxKeys = Math.max(1, maxKeys);
+        this.gen = gen;
+        producer = new Thread(this::produce, "puzzle-pool");
+        producer.setDaemon(true);
+        producer.setPriority(Thread.MIN_PRIORITY);
+        producer.start();
+    }
+
+    private static long key(int w, int h, int diffPercent) {
+        return (long) w << 32 | (long) h << 8 | diffPercent;
+    }
+
+    /**
+     * Rough heap held by one pooled w×h puzzle: board and solution slots,
+     * the connectivity arrays (three ints per cell) and the bitsets, over
+     * the index space including the sentinel border.
+     */
+    static long estimateBytes(int w, int h) {
+        return 16L * (w + 2) * (h + 2) + 1024;
+    }
+
+    static long estimateBytes(Game g) { return estimateBytes(g.w, g.h); }
+
+    /**
+     * Takes a ready puzzle of this shape, or returns null if none is pooled.
+     * On a hit the shape becomes the most recently used one and the producer
+     * tops it up; a miss leaves the pool alone, as the caller now generates
+     * the puzzle itself (see beginForeground). O(1).
+     */
+    public synchronized Game take(int w, int h, int diffPercent) {
+        ArrayDeque<Game> q = peek(key(w, h, diffPercent));
+        Game g = q == null ? null : q.pollFirst();
+        if (g == null) { misses++; return null; }
+        want(w, h, diffPercent);
+        hits++;
+        bytes -= estimateBytes(g);
+        notifyAll();
+        return g;
+    }
+
+    /**
+     * Notes that the caller is generating this shape itself: the producer
+     * leaves it alone until endForeground, and stops a refill of it that is
+     * already running (by interrupting its generate call).
+     */
+    public synchronized void beginForeground(int w, int h, int diffPercent) {
+        long k = key(w, h, diffPercent);
+        foreground.merge(k, 1, Integer::sum);
+        if (inFlight == k && !inFlightCancelled) {
+            inFlightCancelled = true;
+            producer.interrupt();
+        }
+    }
+
+    /** Ends a beginForeground and marks the shape as wanted, so the next request finds it pooled. */
+    public synchronized void endForeground(int w, int h, int diffPercent) {
+        long k = key(w, h, diffPercent);
+        foreground.computeIfPresent(k, (key, n) -> n > 1 ? n - 1 : null);
+        want(w, h, diffPercent);
+        notifyAll();
+    }
+
+    /** Marks a shape as wanted so the producer fills it ahead of the first take(). */
+    public synchronized void prefetch(int w, int h, int diffPercent) {
+        want(w, h, diffPercent);
+        notifyAll();
+    }
+
+    /** Returns the queue of a shape (creating it), marking it most recently used and un-pausing it. */
+    private ArrayDeque<Game> want(int w, int h, int diffPercent) {
+        long k = key(w, h, diffPercent);
+        paused.remove(k);
+        ArrayDeque<Game> q = pools.get(k);
+        if (q == null) {
+            q = new ArrayDeque<>(depth);
+            pools.put(k, q);
+            while (pools.size() > maxKeys) dropEldest();
+        }
+        return q;
+    }
+
+    private void dropEldest() {
+        Iterator<ArrayDeque<Game>> it = pools.values().iterator();
+        for (Game g : it.next()) bytes -= estimateBytes(g);
+        it.remove();
+    }
+
+    /**
+     * Shape the producer should fill next: the most recently used shape that
+     * is short of depth, has room under the cap, and is neither paused nor
+     * being generated in the foreground, or null.
+     */
+    private long[] nextShape() {
+        long[] pick = null;
+        for (Map.Entry<Long, ArrayDeque<Game>> e : pools.entrySet()) {
+            long k = e.getKey();
+            int w = (int) (k >>> 32), h = (int) ((k >>> 8) & 0xFFFFFF);
+            if (e.getValue().size() >= depth || paused.contains(k) || foreground.containsKey(k)) continue;
+            if (!roomFor(k, estimateBytes(w, h))) continue;
+            pick = new long[]{w, h, k & 0xFF};   // Later entries are more recent
+        }
+        return pick;
+    }
+
+    /**
+     * True if a puzzle of size bytes fits under the cap for shape k, counting
+     * the puzzles of less recently used shapes as evictable. More recent
+     * shapes are never evicted for k, so two shapes cannot keep evicting
+     * each other's puzzles.
+     */
+    private boolean roomFor(long k, long size) {
+        long free = maxBytes - bytes;
+        for (Map.Entry<Long, ArrayDeque<Game>> e : pools.entrySet()) {
+            if (free >= size || e.getKey() == k) break;
+            for (Game g : e.getValue()) free += estimateBytes(g);
+        }
+        return free >= size;
+    }
+
+    /** Producer loop: generate one puzzle for the next short shape, or wait for demand. */
+    private void produce() {
+        while (!stopped) {
+            long[] shape = null;
+            synchronized (this) {
+                while (!stopped && (shape = nextShape()) == null) {
+                    try { wait(); } catch (InterruptedException e) { if (stopped) return; }
+                }
+                if (stopped) return;
+                inFlight = key((int) shape[0], (int) shape[1], (int) shape[2]);
+                inFlightCancelled = false;
+            }
+            int w = (int) shape[0], h = (int) shape[1], diff = (int) shape[2];
+            long t0 = System.nanoTime();
+            Game g = gen.generate(w, h, diff, ATTEMPTS);
+            synchronized (this) {
+                busyNs += System.nanoTime() - t0;
+                inFlight = -1;
+                if (stopped) return;
+                if (inFlightCancelled) Thread.interrupted();   // Clear the cancel before waiting again
+                if (g == null) {
+                    // A cancelled run is not the shape's fault; a failed one pauses it
+                    if (!inFlightCancelled) { failedRefills++; paused.add(key(w, h, diff)); }
+                    continue;
+                }
+                produced++;
+                offer(key(w, h, diff), g);
+            }
+        }
+    }
+
+    /**
+     * Adds a produced puzzle if its shape is still wanted, first evicting
+     * puzzles of less recently used shapes if the cap requires it.
+     */
+    private void offer(long k, Game g) {
+        ArrayDeque<Game> q = peek(k);
+        long size = estimateBytes(g);
+        if (q == null || q.size() >= depth || !roomFor(k, size)) return;
+        for (Map.Entry<Long, ArrayDeque<Game>> e : pools.entrySet()) {
+            if (bytes + size <= maxBytes || e.getKey() == k) break;
+            ArrayDeque<Game> other = e.getValue();
+            while (!other.isEmpty() && bytes + size > maxBytes) bytes -= estimateBytes(other.pollLast());
+        }
+        q.addLast(g);
+        bytes += size;
+    }
+
+    /** Stops the producer; pooled puzzles can still be taken. */
+    public void shutdown() {
+        stopped = true;
+        producer.interrupt();
+        synchronized (this) { notifyAll(); }
+    }
+
+    /** Fraction of take() calls that found a ready puzzle. */
+    public synchronized double hitRate() {
+        long n = hits + misses;
+        return n == 0 ? 0 : hits / (double) n;
+    }
+
+    /** Puzzles produced per second of producer generation time. */
+    public synchronized double refillPerSecond() {
+        return busyNs == 0 ? 0 : produced / (busyNs / 1e9);
+    }
+
+    /** Ready puzzles of one shape. */
+    public synchronized int available(int w, int h, int diffPercent) {
+        ArrayDeque<Game> q = peek(key(w, h, diffPercent));
+        return q == null ? 0 : q.size();
+    }
+
+    /** Queue of a shape without touching the LRU order (get() would count as a use). */
+    private ArrayDeque<Game> peek(long k) {
+        for (Map.Entry<Long, ArrayDeque<Game>> e : pools.entrySet()) if (e.getKey() == k) return e.getValue();
+        return null;
+    }
+
+    /** Generator the producer refills with; its report() has the per-shape stats of refills. */
+    public PuzzleGenerator generator() { return gen; }
+
+    /** Estimated heap held by pooled puzzles. */
+    public synchronized long bytes() { return bytes; }
+
+    @Override public synchronized String toString() {
+        return String.format("pool: %d shapes, %.1f MB, hits %d / misses %d (%.0f%%), produced %d (%d failed refills), %.1f puzzles/s",
+                pools.size(), bytes / 1048576.0, hits, misses, 100 * hitRate(), produced, failedRefills, refillPerSecond());
+    }
+}
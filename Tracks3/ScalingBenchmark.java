@@ -0,0 +1,131 @@
+package Tracks;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.ref.Reference;
+import java.util.Random;
+
+/**
+ * Scaling benchmark for large-board mode.
+ *
+ * For each board side it times every subsystem on its own: generation,
+ * copying, single moves, the solved check, path finding, a full solver run,
+ * restart and painting one viewport, and reports the heap held by a
+ * player/computer pair of games. Run with a large heap for the top sizes:
+ *
+ *   java -Xmx2g [-Dlayout=SOA] [-Dbatch=N] Tracks.ScalingBenchmark [side ...]
+ *
+ * The solver run places pieces in batches of ComputerSolver.batchSize.
+ */
+public class ScalingBenchmark {
+
+    private static final int[] DEFAULT_SIDES = {50, 100, 200, 500, 1000, 2000};
+    private static final int GEN_ATTEMPTS = 50;
+    private static final int MOVES = 20_000;
+    private static final int VIEW_W = 1000, VIEW_H = 700;
+    private static final CellStore.Layout LAYOUT =
+            CellStore.Layout.valueOf(System.getProperty("layout", "PACKED"));
+
+    public static void main(String[] args) {
+        int[] sides = DEFAULT_SIDES;
+        if (args.length > 0) {
+            sides = new int[args.length];
+            for (int i = 0; i < args.length; i++) sides[i] = Integer.parseInt(args[i]);
+        }
+        System.out.printf("%6s %9s %4s %8s %8s %9s %8s %9s %10s %9s %8s %7s%n",
+                "side", "gen ms", "att", "copy ms", "move ns", "solved ns", "path ms",
+                "solve ms", "steps", "restart", "paint ms", "heap MB");
+        for (int side : sides) run(side);
+    }
+
+    private static void run(int side) {
+        // Generation (attempts until one succeeds)
+        long t0 = System.nanoTime();
+        Game g = null;
+        int attempts = 0;
+        while (g == null && attempts < GEN_ATTEMPTS) {
+            attempts++;
+            Game tmp = new Game(side, side, LAYOUT);
+            if (tmp.genPathAndSolution(35)) g = tmp;
+        }
+        double genMs = ms(System.nanoTime() - t0);
+        if (g == null) {
+            System.out.printf("%6d %9.0f %4d  generation failed%n", side, genMs, attempts);
+            return;
+        }
+
+        // Copy (what New Game does for the computer board)
+        t0 = System.nanoTime();
+        Game comp = g.copy();
+        double copyMs = ms(System.nanoTime() - t0);
+
+        // Single moves on random non-clue cells
+        Random r = new Random(side);
+        int played = 0;
+        t0 = System.nanoTime();
+        for (int k = 0; k < MOVES; k++) {
+            int i = g.idx(r.nextInt(g.w), r.nextInt(g.h));
+            if (g.isClue(i)) continue;
+            g.playMove(g.xOf(i), g.yOf(i), Util.nextType(g.type(i)));
+            played++;
+        }
+        double moveNs = (System.nanoTime() - t0) / (double) Math.max(1, played);
+
+        // Solved check after each move (memo misses every time)
+        t0 = System.nanoTime();
+        int checks = 0;
+        for (int k = 0; k < 1000; k++) {
+            int i = g.idx(r.nextInt(g.w), r.nextInt(g.h));
+            if (g.isClue(i)) continue;
+            g.setCell(g.xOf(i), g.yOf(i), Util.nextType(g.type(i)));
+            g.checkSolved();
+            checks++;
+        }
+        double solvedNs = (System.nanoTime() - t0) / (double) Math.max(1, checks);
+        g.restart();
+
+        // Full solver run on the computer board
+        ComputerSolver solver = new ComputerSolver(comp, ComputerSolver.Algo.GREEDY);
+        t0 = System.nanoTime();
+        int steps = 0;
+        for (int placed; !comp.checkSolved() && (placed = solver.stepBatch(ComputerSolver.batchSize)) > 0; ) steps += placed;
+        double solveMs = ms(System.nanoTime() - t0);
+
+        // Path finding on the solved board (cold, then memo hit)
+        t0 = System.nanoTime();
+        int[] path = comp.findPath();
+        double pathMs = ms(System.nanoTime() - t0);
+        if (path == null) System.out.println("  warning: solver did not connect start and end");
+
+        // Painting one viewport of the solved board with the path highlighted
+        BoardPanel bp = new BoardPanel(false);
+        bp.setGame(comp);
+        bp.highlightPath = true;
+        bp.setSize(bp.getPreferredSize());
+        BufferedImage img = new BufferedImage(VIEW_W, VIEW_H, BufferedImage.TYPE_INT_RGB);
+        Graphics2D gr = img.createGraphics();
+        gr.setClip(0, 0, VIEW_W, VIEW_H);
+        t0 = System.nanoTime();
+        bp.paintComponent(gr);
+        double paintMs = ms(System.nanoTime() - t0);
+        gr.dispose();
+
+        // Restart back to the pristine puzzle
+        t0 = System.nanoTime();
+        comp.restart();
+        double restartMs = ms(System.nanoTime() - t0);
+
+        // Heap held by the player/computer pair
+        Runtime rt = Runtime.getRuntime();
+        System.gc();
+        long heap = rt.totalMemory() - rt.freeMemory();
+
+        System.out.printf("%6d %9.1f %4d %8.3f %8.0f %9.0f %8.2f %9.1f %10d %9.2f %8.2f %7d%n",
+                side, genMs, attempts, copyMs, moveNs, solvedNs, pathMs,
+                solveMs, steps, restartMs, paintMs, heap >> 20);
+        Reference.reachabilityFence(g);
+        Reference.reachabilityFence(comp);
+    }
+
+    private static double ms(long ns) { return ns / 1e6; }
+}
@@ -0,0 +1,123 @@
+package Tracks;
+
+import java.util.Arrays;
+
+/**
+ * Struct-of-arrays cell storage for a Tracks board.
+ *
+ * Types live in a byte[] of TType ordinals and each flag (clue, start,
+ * end, wall) in its own long[] bitmask, one bit per cell. Whole-board passes
+ * (restart, reveal, clue scans) are plain primitive loops over the type
+ * array, or 64 cells at a time over a mask, which the JIT can unroll and
+ * vectorise. Copies and snapshots are O(cells); use PackedBoard when those
+ * dominate.
+ */
+public final class SoaBoard implements CellStore {
+
+    /** Number of addressable cells */
+    public final int size;
+
+    /** TType ordinal of every cell */
+    final byte[] types;
+
+    /** Flag bitmasks, bit (i & 63) of word (i >>> 6) for cell i */
+    final long[] clue, start, end, wall;
+
+    /** Creates an all-EMPTY board with the given number of cells. */
+    public SoaBoard(int size) {
+        this.size = size;
+        types = new byte[size];
+        int words = (size + 63) >>> 6;
+        clue  = new long[words];
+        start = new long[words];
+        end   = new long[words];
+        wall  = new long[words];
+    }
+
+    private SoaBoard(SoaBoard src) {
+        size  = src.size;
+        types = src.types.clone();
+        clue  = src.clue.clone();
+        start = src.start.clone();
+        end   = src.end.clone();
+        wall  = src.wall.clone();
+    }
+
+    private static boolean bit(long[] m, int i) { return (m[i >>> 6] & 1L << i) != 0; }
+
+    private static void bit(long[] m, int i, boolean on) {
+        if (on) m[i >>> 6] |= 1L << i;
+        else    m[i >>> 6] &= ~(1L << i);
+    }
+
+    @Override public int size() { return size; }
+
+    public int get(int i) {
+        return types[i] | (bit(clue, i) ? CLUE : 0) | (bit(start, i) ? START : 0) | (bit(end, i) ? END : 0)
+                | (bit(wall, i) ? WALL : 0);
+    }
+
+    public void set(int i, int v) {
+        types[i] = (byte) (v & TYPE_MASK);
+        bit(clue, i, (v & CLUE) != 0);
+        bit(start, i, (v & START) != 0);
+        bit(end, i, (v & END) != 0);
+        bit(wall, i, (v & WALL) != 0);
+    }
+
+    public int typeOrd(int i) { return types[i]; }
+
+    public void setType(int i, TType t) { types[i] = (byte) t.ordinal(); }
+
+    public boolean isClue(int i)  { return bit(clue, i); }
+    public boolean isStart(int i) { return bit(start, i); }
+    public boolean isEnd(int i)   { return bit(end, i); }
+    @Override public boolean isWall(int i) { return bit(wall, i); }
+
+    public void setFlag(int i, int flag, boolean on) {
+        if ((flag & CLUE)  != 0) bit(clue, i, on);
+        if ((flag & START) != 0) bit(start, i, on);
+        if ((flag & END)   != 0) bit(end, i, on);
+        if ((flag & WALL)  != 0) bit(wall, i, on);
+    }
+
+    public void clear() {
+        Arrays.fill(types, (byte) 0);
+        Arrays.fill(clue, 0L);
+        Arrays.fill(start, 0L);
+        Arrays.fill(end, 0L);
+    }
+
+    public int nextNonEmpty(int from) {
+        for (int i = Math.max(0, from); i < size; i++) if (types[i] != 0) return i;
+        return -1;
+    }
+
+    public void copyTypesFrom(CellStore sol) {
+        if (sol instanceof SoaBoard) {
+            System.arraycopy(((SoaBoard) sol).types, 0, types, 0, size);
+            return;
+        }
+        for (int i = 0; i < size; i++) types[i] = (byte) sol.typeOrd(i);
+    }
+
+    /** Clears non-clue types 64 cells at a time; words without clues are a plain fill. */
+    public void resetToClues(CellStore sol) {
+        for (int wi = 0; wi < clue.length; wi++) {
+            int lo = wi << 6, hi = Math.min(size, lo + 64);
+            long m = clue[wi];
+            if (m == 0) { Arrays.fill(types, lo, hi, (byte) 0); continue; }
+            for (int i = lo; i < hi; i++)
+                types[i] = (m & 1L << i) != 0 ? (byte) sol.typeOrd(i) : 0;
+        }
+    }
+
+    @Override public SoaBoard copy() { return new SoaBoard(this); }
+
+    /** Packs the cells into a fresh snapshot. O(cells). */
+    public BoardSnapshot snapshot() {
+        PackedBoard p = new PackedBoard(size);
+        for (int i = 0; i < size; i++) p.set(i, get(i));
+        return p.snapshot();
+    }
+}
@@ -3,6 +3,7 @@ package Tracks;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.util.List;
 
 /**
  * TracksGame 
@@ -19,13 +20,21 @@ public class TracksGame extends JFrame {
     //  STATE
     // ═════════════════════════════════════════════════════════════════════
     private Game userGame;                     // Player's board
-    private Game compGame;                     // Computer's board (separate clone)
-    private Game originalGame;                 // Pristine puzzle (never modified)
+    private Game compGame;                     // Computer's board (separate clone; pristine puzzle via compGame.pristine)
     private ComputerSolver solver;             // Algorithm solver
     private ComputerSolver.Algo selectedAlgo = ComputerSolver.Algo.GREEDY;
 
     private int setW = 8, setH = 8, setDiff = 35;  // Game settings
 
+    /** Max undo entries kept for the computer board (bounds memory on long runs) */
+    private static final int COMP_JOURNAL_CAP = 1 << 16;
+
+    /** Time spent on solver steps per timer tick on large boards */
+    private static final long TICK_BUDGET_NS = 15_000_000L;
+
+    /** Generation attempts (run in parallel, see PuzzleGenerator) before giving up on a size */
+    private static final int GEN_ATTEMPTS = 50;
+
     private boolean userSolved = false;
     private boolean compSolved = false;
     private int     userMoves  = 0;
@@ -34,13 +43,14 @@ public class TracksGame extends JFrame {
     private long compStartMs, compEndMs;
 
     private Timer compTimer;  // Timer for animated computer solving
+    private SwingWorker<Game, Integer> genWorker;  // Puzzle generation in progress (off the EDT)
 
     // ═════════════════════════════════════════════════════════════════════
     //  UI COMPONENTS
     // ═════════════════════════════════════════════════════════════════════
     private BoardPanel userBoard, compBoard;
     private JLabel     lblMsg;
-    private JButton    btnNew, btnRestart, btnUndo, btnSolve, btnCheck;
+    private JButton    btnNew, btnRestart, btnUndo, btnRedo, btnSolve, btnCheck;
     private JButton    btnRunComp, btnRestartComp, btnChangeAlgo, btnAnalysis;
     private JPanel     topBar;
 
@@ -74,6 +84,7 @@ public class TracksGame extends JFrame {
         btnNew         = colorBtn("New Game",          new Color(76,  175, 80));
         btnRestart     = colorBtn("Restart",            new Color(255, 193, 7));
         btnUndo        = colorBtn("Undo",               new Color(33,  150, 243));
+        btnRedo        = colorBtn("Redo",               new Color(33,  150, 243));
         btnSolve       = colorBtn("Show Solution",      new Color(244, 67,  54));
         btnCheck       = colorBtn("Check",              new Color(156, 39,  176));
         btnRunComp     = colorBtn("▶ Run Computer",     new Color(0,   150, 136));
@@ -87,6 +98,7 @@ public class TracksGame extends JFrame {
         topBar.add(btnNew);
         topBar.add(btnRestart);
         topBar.add(btnUndo);
+        topBar.add(btnRedo);
         topBar.add(btnSolve);
         topBar.add(btnCheck);
         topBar.add(new JSeparator(JSeparator.VERTICAL));
@@ -114,6 +126,7 @@ public class TracksGame extends JFrame {
         btnNew    .addActionListener(e -> newGameDialog());
         btnRestart.addActionListener(e -> handleRestart());
         btnUndo   .addActionListener(e -> handleUndo());
+        btnRedo   .addActionListener(e -> handleRedo());
         btnSolve  .addActionListener(e -> handleReveal());
         btnCheck  .addActionListener(e -> handleCheck());
         btnRunComp    .addActionListener(e -> startComputerSolve());
@@ -194,7 +207,7 @@ public class TracksGame extends JFrame {
         try {
             int nw = Integer.parseInt(tfW.getText().trim());
             int nh = Integer.parseInt(tfH.getText().trim());
-            if (nw < 4 || nh < 4 || nw > 14 || nh > 14) throw new NumberFormatException();
+            if (nw < 4 || nh < 4 || nw > Game.MAX_SIDE || nh > Game.MAX_SIDE) throw new NumberFormatException();
             setW = nw; setH = nh;
         } catch (NumberFormatException ex) {
             JOptionPane.showMessageDialog(this, "Invalid size; using defaults.");
@@ -206,22 +219,61 @@ public class TracksGame extends JFrame {
         startNewGame();
     }
 
-    /** Starts a new game with current settings. */
+    /**
+     * Starts a new game with current settings. The puzzle is generated on a
+     * worker thread so large boards do not freeze the window.
+     */
     private void startNewGame() {
-        // Generate puzzle
-        Game g = null;
-        for (int t = 0; t < 50 && g == null; t++) {
-            Game tmp = new Game(setW, setH);
-            if (tmp.genPathAndSolution(setDiff)) g = tmp;
-        }
-        if (g == null) {
-            JOptionPane.showMessageDialog(this, "Couldn't generate puzzle — try different size.");
+        if (genWorker != null) genWorker.cancel(true);
+        final int w = setW, h = setH, diff = setDiff;
+
+        // A pre-generated puzzle of this shape is installed at once; on a miss it is generated here and pooled afterwards
+        PuzzlePool pool = PuzzlePool.shared();
+        Game ready = pool.take(w, h, diff);
+        if (ready != null) {
+            genWorker = null;
+            btnNew.setEnabled(true);
+            installGame(ready);
             return;
         }
+        btnNew.setEnabled(false);
+        setMessage("Generating " + w + "×" + h + " puzzle…");
+
+        genWorker = new SwingWorker<Game, Integer>() {
+            @Override protected Game doInBackground() {
+                // Attempts run in parallel; cancelling this worker interrupts the wait and cancels them
+                pool.beginForeground(w, h, diff);
+                try {
+                    return PuzzleGenerator.shared().generate(w, h, diff, GEN_ATTEMPTS, failed -> publish(failed));
+                } finally {
+                    pool.endForeground(w, h, diff);
+                }
+            }
+            @Override protected void process(List<Integer> failed) {
+                setMessage("Generating " + w + "×" + h + " puzzle…  " + failed.get(failed.size() - 1) + " failed attempts");
+            }
+            @Override protected void done() {
+                if (isCancelled() || genWorker != this) return;
+                genWorker = null;
+                btnNew.setEnabled(true);
+                Game g = null;
+                try { g = get(); } catch (Exception ignored) {}
+                if (g == null) {
+                    JOptionPane.showMessageDialog(TracksGame.this, "Couldn't generate puzzle — try different size.");
+                    setMessage("Generation failed.");
+                    return;
+                }
+                installGame(g);
+            }
+        };
+        genWorker.execute();
+    }
 
+    /** Makes a freshly generated puzzle the current game on both boards. */
+    private void installGame(Game g) {
         userGame     = g;
-        originalGame = cloneGame(g);   // pristine copy — never touched
         compGame     = cloneGame(g);
+        compGame.journal.setCap(COMP_JOURNAL_CAP);
         solver   = new ComputerSolver(compGame, selectedAlgo);
 
         userSolved = false; compSolved = false;
@@ -251,26 +303,27 @@ public class TracksGame extends JFrame {
         if (userGame == null || userSolved || userGame.revealedSolution) {
             setMessage("Restart to play again."); return;
         }
-        if (userGame.board[y][x].clue) { setMessage("Cell is a clue (locked)"); return; }
+        int i = userGame.idx(x, y);
+        if (userGame.isClue(i)) { setMessage("Cell is a clue (locked)"); return; }
 
-        userGame.hist.push(new Move(x, y, userGame.board[y][x].t, false));
-        userGame.board[y][x].t = Util.nextType(userGame.board[y][x].t);
-        userGame.rebuildGraph();
+        userGame.playMove(x, y, Util.nextType(userGame.type(i)));
         userMoves++;
         userBoard.highlightPath = false;
         userBoard.repaint();
 
-        if (userGame.checkSolved()) {
-            userEndMs  = System.currentTimeMillis();
-            userSolved = true;
-            userBoard.highlightPath = true;
-            userBoard.repaint();
-            setMessage("🎉 Solved!  Moves: " + userMoves + "  Time: " +
-                       String.format("%.1f s", (userEndMs - userStartMs) / 1000.0));
-            btnAnalysis.setEnabled(true);
-        } else {
-            setMessage("Moves: " + userMoves + "  |  Keep going!");
-        }
+        if (userGame.checkSolved()) finishUserGame();
+        else setMessage("Moves: " + userMoves + "  |  Keep going!");
+    }
+
+    /** Ends the player's game after a move that solved it. */
+    private void finishUserGame() {
+        userEndMs  = System.currentTimeMillis();
+        userSolved = true;
+        userBoard.highlightPath = true;
+        userBoard.repaint();
+        setMessage("🎉 Solved!  Moves: " + userMoves + "  Time: " +
+                   String.format("%.1f s", (userEndMs - userStartMs) / 1000.0));
+        btnAnalysis.setEnabled(true);
     }
 
     /** Undoes the last player move. */
@@ -283,6 +336,16 @@ public class TracksGame extends JFrame {
         setMessage("Undo  |  Moves: " + userMoves);
     }
 
+    /** Re-applies the last undone player move. */
+    private void handleRedo() {
+        if (userGame == null || userSolved || userGame.revealedSolution) return;
+        if (!userGame.redo()) return;
+        userMoves++;
+        userBoard.repaint();
+        if (userGame.checkSolved()) finishUserGame();
+        else setMessage("Redo  |  Moves: " + userMoves);
+    }
+
     /** Restarts the current game. */
     private void handleRestart() {
         if (userGame == null) return;
@@ -322,8 +385,8 @@ public class TracksGame extends JFrame {
     /** Resets the computer board and solver so it can be run again. */
     private void handleRestartComputer() {
         if (compTimer != null && compTimer.isRunning()) compTimer.stop();
-        if (originalGame == null) return;
-        compGame   = cloneGame(originalGame);   // always from pristine puzzle
+        if (compGame == null) return;
+        compGame.restore(compGame.pristine);   // always from pristine puzzle; O(changed chunks)
         solver     = new ComputerSolver(compGame, selectedAlgo);
         compSolved = false;
         compStartMs = System.currentTimeMillis();
@@ -380,9 +443,15 @@ public class TracksGame extends JFrame {
         compStartMs = System.currentTimeMillis();
         setMessage("🤖 " + solver.getMetrics().algoName + " is solving…");
 
-        compTimer = new Timer(180, null);
+        // Small boards animate one piece per tick; large boards place batches for a fixed time budget per tick
+        boolean large = compGame.isLarge();
+        compTimer = new Timer(large ? 20 : 180, null);
         compTimer.addActionListener(e -> {
-            boolean moved = solver.step();
+            long tEnd = System.nanoTime() + TICK_BUDGET_NS;
+            boolean moved;
+            do {
+                moved = large ? solver.stepBatch(ComputerSolver.batchSize) > 0 : solver.step();
+            } while (large && moved && !solver.game.checkSolved() && System.nanoTime() < tEnd);
             compBoard.repaint();
 
             if (solver.game.checkSolved()) {
@@ -445,20 +514,9 @@ public class TracksGame extends JFrame {
     /** Updates the status message. */
     public void setMessage(String msg) { lblMsg.setText("  " + msg); }
 
-    /** Clones a game for independent play. */
+    /** Clones a game for independent play (chunks are shared copy-on-write). */
     private Game cloneGame(Game src) {
-        Game dst = new Game(src.w, src.h);
-        dst.sx = src.sx; dst.sy = src.sy;
-        dst.ex = src.ex; dst.ey = src.ey;
-        dst.rowClues = src.rowClues.clone();
-        dst.colClues = src.colClues.clone();
-        for (int y = 0; y < src.h; y++)
-            for (int x = 0; x < src.w; x++) {
-                dst.sol[y][x]   = src.sol[y][x];
-                dst.board[y][x] = src.board[y][x].copy();
-            }
-        dst.rebuildGraph();
-        return dst;
+        return src.copy();
     }
 
     /** Creates a colored button (Review 2 style). */
@@ -21,17 +21,58 @@ public class Util {
         TType.SW
     };
 
+    // ═════════════════════════════════════════════════════════════════════
+    //  CONNECTION-MASK TABLES
+    //  A cell's connections are a 4-bit mask with one bit per Dir ordinal
+    //  (U=1, D=2, L=4, R=8). All tables are indexed by ordinal so hot loops
+    //  never allocate.
+    // ═════════════════════════════════════════════════════════════════════
+    /** TType constants indexed by ordinal. */
+    public static final TType[] TYPES = TType.values();
+
+    /** Dir constants indexed by ordinal. */
+    public static final Dir[] DIRS = Dir.values();
+
+    /** Connection mask of each TType ordinal. */
+    public static final int[] MASK = new int[TYPES.length];
+
+    /** TType ordinal for each 4-bit mask (EMPTY for masks that are not a piece). */
+    public static final int[] TYPE_OF_MASK = new int[16];
+
+    /** Opposite Dir ordinal of each Dir ordinal. */
+    public static final int[] OPP = {1, 0, 3, 2};
+
+    /** X offset of each Dir ordinal. */
+    public static final int[] DX = {0, 0, -1, 1};
+
+    /** Y offset of each Dir ordinal. */
+    public static final int[] DY = {-1, 1, 0, 0};
+
+    /** Next TType ordinal in the click cycle. */
+    public static final int[] NEXT = new int[TYPES.length];
+
+    static {
+        for (TType t : TYPES) {
+            int m = 0;
+            for (Dir d : dirsOf(t)) m |= 1 << d.ordinal();
+            MASK[t.ordinal()] = m;
+            TYPE_OF_MASK[m] = t.ordinal();
+        }
+        for (int i = 0; i < cycle.length; i++)
+            NEXT[cycle[i].ordinal()] = cycle[(i + 1) % cycle.length].ordinal();
+    }
+
+    /** Returns true if the piece with ordinal t connects towards Dir ordinal d. */
+    public static boolean connects(int t, int d) {
+        return (MASK[t] & (1 << d)) != 0;
+    }
+
     /**
      * Returns the next track type in the cycle. Wraps around to EMPTY at the
      * end.
      */
     public static TType nextType(TType cur) {
-        for (int i = 0; i < cycle.length; i++) {
-            if (cycle[i] == cur) {
-                return cycle[(i + 1) % cycle.length];
-            }
-        }
-        return TType.EMPTY;
+        return TYPES[NEXT[cur.ordinal()]];
     }
 
     /**
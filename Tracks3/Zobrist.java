@@ -0,0 +1,49 @@
+package Tracks;
+
+/**
+ * 64-bit Zobrist keys for board states.
+ *
+ * A state hash is the XOR of one key per (cell, TType) pair and, for the
+ * solvers, one key per (row, count) and (column, count) pair. Changing one
+ * cell or one counter is therefore an O(1) XOR update. Keys are derived on
+ * demand with the SplitMix64 finaliser instead of stored in tables, so any
+ * board size works without extra memory. EMPTY cells and zero counts hash
+ * to 0, which makes the hash of an empty board 0.
+ */
+public final class Zobrist {
+
+    private static final long CELL_SEED = 0x9E3779B97F4A7C15L;
+    private static final long ROW_SEED  = 0xC2B2AE3D27D4EB4FL;
+    private static final long COL_SEED  = 0x165667B19E3779F9L;
+
+    private Zobrist() {}
+
+    /** SplitMix64 finaliser. */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /** Key of cell i holding the piece with ordinal ord. */
+    public static long cell(int i, int ord) {
+        return ord == 0 ? 0L : mix(CELL_SEED + ((long) i << 3 | ord));
+    }
+
+    /** Key of row r holding count pieces. */
+    public static long row(int r, int count) {
+        return count == 0 ? 0L : mix(ROW_SEED + ((long) r << 32 | count));
+    }
+
+    /** Key of column c holding count pieces. */
+    public static long col(int c, int count) {
+        return count == 0 ? 0L : mix(COL_SEED + ((long) c << 32 | count));
+    }
+
+    /** Full hash of a board's cell types. O(cells); use only for bulk rebuilds. */
+    public static long of(CellStore b) {
+        long h = 0;
+        for (int i = 0, n = b.size(); i < n; i++) h ^= cell(i, b.typeOrd(i));
+        return h;
+    }
+}